@@ -1,5 +1,8 @@
 package com.phatjam98.elasticsearch.micronaut.factory;
 
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.phatjam98.elasticsearch.utils.ProtoJacksonModule;
 import io.micronaut.context.annotation.Factory;
 import io.micronaut.context.annotation.Property;
 import io.micronaut.context.annotation.Replaces;
@@ -19,6 +22,7 @@ import org.apache.http.conn.ssl.TrustAllStrategy;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
 import org.apache.http.ssl.SSLContextBuilder;
+import org.elasticsearch.client.RestClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,10 +44,45 @@ public class ClientFactory {
   @Value("${elasticsearch.insecure-trust-all-certificates:false}")
   private boolean insecureTrustAllCertificates;
 
+  @Value("${elasticsearch.compression.enabled:false}")
+  private boolean compressionEnabled;
+
+  @Value("${elasticsearch.compression.algorithm:gzip}")
+  private String compressionAlgorithm;
+
+  @Value("${elasticsearch.compression.threshold:1024}")
+  private int compressionThreshold;
+
+  @Property(name = "elasticsearch.compression.accept-encoding")
+  @Nullable
+  private Boolean acceptEncoding;
+
+  @Singleton
+  CompressionStats compressionStats() {
+    return new CompressionStats();
+  }
+
   @Replaces(HttpAsyncClientBuilder.class)
   @Singleton
-  HttpAsyncClientBuilder builder() {
-    HttpAsyncClientBuilder builder = HttpAsyncClientBuilder.create();
+  HttpAsyncClientBuilder builder(CompressionStats compressionStats) {
+    HttpAsyncClientBuilder builder;
+    // Gzip responses are requested along with request compression unless configured on their own.
+    boolean acceptGzip = acceptEncoding != null ? acceptEncoding : compressionEnabled;
+
+    if (compressionEnabled) {
+      LOGGER.info("Compressing request bodies of {} bytes or more with {}", compressionThreshold,
+          compressionAlgorithm);
+      builder = new CompressingHttpAsyncClientBuilder(
+          CompressingHttpAsyncClientBuilder.Algorithm.from(compressionAlgorithm),
+          compressionThreshold, acceptGzip, compressionStats);
+    } else {
+      builder = HttpAsyncClientBuilder.create();
+
+      if (acceptGzip) {
+        CompressingHttpAsyncClientBuilder.acceptGzip(builder);
+      }
+    }
+
     CredentialsProvider credentialsProvider = null;
 
     if (username != null && password != null) {
@@ -72,4 +111,17 @@ public class ClientFactory {
 
     return builder;
   }
+
+  /**
+   * Transport whose JsonpMapper reads and writes protobuf messages directly, so searches can be
+   * typed with a generated protobuf class instead of Map.
+   *
+   * @param restClient low level RestClient
+   * @return ElasticsearchTransport
+   */
+  @Replaces(ElasticsearchTransport.class)
+  @Singleton
+  ElasticsearchTransport transport(RestClient restClient) {
+    return new RestClientTransport(restClient, ProtoJacksonModule.jsonpMapper());
+  }
 }
@@ -0,0 +1,241 @@
+package com.phatjam98.elasticsearch.micronaut.factory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.Future;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.BasicAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * HttpAsyncClientBuilder whose clients compress request bodies of at least a threshold size.
+ * The RestClient hands the client a request producer that has already captured the body, so
+ * compression happens by swapping the producer when the request is generated rather than in an
+ * interceptor.  Bodies that do not get smaller are sent as they are.
+ *
+ * <p>Responses are requested gzip encoded; the RestClient decompresses them.
+ */
+public class CompressingHttpAsyncClientBuilder extends HttpAsyncClientBuilder {
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(CompressingHttpAsyncClientBuilder.class);
+
+  private final Algorithm algorithm;
+  private final int threshold;
+  private final CompressionStats stats;
+
+  /**
+   * Creates a builder for clients that compress request bodies.
+   *
+   * @param algorithm  compression algorithm
+   * @param threshold  minimum body size in bytes to compress
+   * @param acceptGzip whether to ask for gzip encoded responses
+   * @param stats      CompressionStats to record request sizes in
+   */
+  public CompressingHttpAsyncClientBuilder(Algorithm algorithm, int threshold, boolean acceptGzip,
+                                           CompressionStats stats) {
+    this.algorithm = algorithm;
+    this.threshold = threshold;
+    this.stats = stats;
+
+    if (acceptGzip) {
+      acceptGzip(this);
+    }
+  }
+
+  /**
+   * Asks for gzip encoded responses on every request of the builder's clients, whether or not
+   * request bodies are compressed.
+   *
+   * @param builder HttpAsyncClientBuilder
+   * @return the builder
+   */
+  public static HttpAsyncClientBuilder acceptGzip(HttpAsyncClientBuilder builder) {
+    return builder.addInterceptorLast((HttpRequest request, HttpContext context) -> {
+      if (!request.containsHeader(HttpHeaders.ACCEPT_ENCODING)) {
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+      }
+    });
+  }
+
+  @Override
+  public CloseableHttpAsyncClient build() {
+    return new CompressingClient(super.build());
+  }
+
+  /**
+   * Request body compression algorithms, named as in the Content-Encoding header.
+   */
+  public enum Algorithm {
+    GZIP("gzip"),
+    DEFLATE("deflate");
+
+    private final String encoding;
+
+    Algorithm(String encoding) {
+      this.encoding = encoding;
+    }
+
+    /**
+     * Parses a configured algorithm name, ignoring case.
+     *
+     * @param name algorithm name
+     * @return Algorithm
+     */
+    public static Algorithm from(String name) {
+      return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    public String encoding() {
+      return encoding;
+    }
+
+    OutputStream wrap(OutputStream out) throws IOException {
+      return this == GZIP ? new GZIPOutputStream(out) : new DeflaterOutputStream(out);
+    }
+  }
+
+  private class CompressingClient extends CloseableHttpAsyncClient {
+    private final CloseableHttpAsyncClient delegate;
+
+    CompressingClient(CloseableHttpAsyncClient delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public boolean isRunning() {
+      return delegate.isRunning();
+    }
+
+    @Override
+    public void start() {
+      delegate.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+
+    @Override
+    public <T> Future<T> execute(HttpAsyncRequestProducer requestProducer,
+                                 HttpAsyncResponseConsumer<T> responseConsumer,
+                                 HttpContext context, FutureCallback<T> callback) {
+      return delegate.execute(new CompressingProducer(requestProducer), responseConsumer, context,
+          callback);
+    }
+  }
+
+  private class CompressingProducer implements HttpAsyncRequestProducer {
+    private HttpAsyncRequestProducer delegate;
+
+    CompressingProducer(HttpAsyncRequestProducer delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public HttpHost getTarget() {
+      return delegate.getTarget();
+    }
+
+    @Override
+    public HttpRequest generateRequest() throws IOException, HttpException {
+      HttpRequest request = delegate.generateRequest();
+
+      if (!(request instanceof HttpEntityEnclosingRequest)) {
+        return request;
+      }
+
+      HttpEntityEnclosingRequest enclosingRequest = (HttpEntityEnclosingRequest) request;
+      HttpEntity entity = enclosingRequest.getEntity();
+
+      if (entity == null) {
+        return request;
+      }
+
+      long raw = entity.getContentLength();
+
+      if (raw < threshold || entity.getContentEncoding() != null || !entity.isRepeatable()) {
+        stats.recordUncompressed(Math.max(raw, 0));
+        return request;
+      }
+
+      long start = System.nanoTime();
+      ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(raw / 2, 1 << 20));
+
+      try (OutputStream compressing = algorithm.wrap(out)) {
+        entity.writeTo(compressing);
+      }
+
+      long nanos = System.nanoTime() - start;
+
+      if (out.size() >= raw) {
+        stats.recordUncompressed(raw);
+        return request;
+      }
+
+      ByteArrayEntity compressed = new ByteArrayEntity(out.toByteArray());
+      compressed.setContentType(entity.getContentType());
+      compressed.setContentEncoding(algorithm.encoding());
+      enclosingRequest.setEntity(compressed);
+
+      // The original producer has already captured the raw body, so replace it.
+      HttpHost target = delegate.getTarget();
+      delegate.close();
+      delegate = new BasicAsyncRequestProducer(target, request);
+      stats.recordCompressed(raw, compressed.getContentLength(), nanos);
+      LOGGER.debug("Compressed {} request body from {} to {} bytes in {}us",
+          algorithm.encoding(), raw, compressed.getContentLength(), nanos / 1000);
+
+      return request;
+    }
+
+    @Override
+    public void produceContent(ContentEncoder encoder, IOControl ioControl) throws IOException {
+      delegate.produceContent(encoder, ioControl);
+    }
+
+    @Override
+    public void requestCompleted(HttpContext context) {
+      delegate.requestCompleted(context);
+    }
+
+    @Override
+    public void failed(Exception ex) {
+      delegate.failed(ex);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+      return delegate.isRepeatable();
+    }
+
+    @Override
+    public void resetRequest() throws IOException {
+      delegate.resetRequest();
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+  }
+}
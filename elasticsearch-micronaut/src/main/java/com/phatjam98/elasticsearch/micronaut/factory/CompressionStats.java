@@ -0,0 +1,200 @@
+package com.phatjam98.elasticsearch.micronaut.factory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of request body compression, used to tune
+ * {@code elasticsearch.compression.threshold} against the CPU spent compressing.  Raw bytes are
+ * counted for every request body; compressed bytes only for bodies that were sent compressed.
+ *
+ * <p>Every request is also recorded in a power of two bucket of its raw size, so
+ * {@link #getSizeDistribution()} shows how many bodies of each size there are and how well each
+ * size compresses, which is what the threshold should be chosen from.
+ */
+public class CompressionStats {
+  private static final int SIZE_BUCKETS = Long.SIZE;
+
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder compressedRequests = new LongAdder();
+  private final LongAdder rawBytes = new LongAdder();
+  private final LongAdder compressedRawBytes = new LongAdder();
+  private final LongAdder compressedBytes = new LongAdder();
+  private final LongAdder compressionNanos = new LongAdder();
+  private final Bucket[] sizes = new Bucket[SIZE_BUCKETS];
+
+  /**
+   * Creates empty stats.
+   */
+  public CompressionStats() {
+    for (int i = 0; i < SIZE_BUCKETS; i++) {
+      sizes[i] = new Bucket();
+    }
+  }
+
+  void recordUncompressed(long raw) {
+    requests.increment();
+    rawBytes.add(raw);
+    sizes[bucket(raw)].record(raw, raw, false);
+  }
+
+  void recordCompressed(long raw, long compressed, long nanos) {
+    requests.increment();
+    compressedRequests.increment();
+    rawBytes.add(raw);
+    compressedRawBytes.add(raw);
+    compressedBytes.add(compressed);
+    compressionNanos.add(nanos);
+    sizes[bucket(raw)].record(raw, compressed, true);
+  }
+
+  public long getRequests() {
+    return requests.sum();
+  }
+
+  public long getCompressedRequests() {
+    return compressedRequests.sum();
+  }
+
+  public long getRawBytes() {
+    return rawBytes.sum();
+  }
+
+  public long getCompressedBytes() {
+    return compressedBytes.sum();
+  }
+
+  /**
+   * Total bytes sent for request bodies, compressed or not.
+   *
+   * @return bytes sent
+   */
+  public long getSentBytes() {
+    return rawBytes.sum() - compressedRawBytes.sum() + compressedBytes.sum();
+  }
+
+  public long getCompressionNanos() {
+    return compressionNanos.sum();
+  }
+
+  /**
+   * Compressed size as a fraction of the raw size, over the bodies that were compressed.
+   *
+   * @return ratio, or 1 when nothing has been compressed
+   */
+  public double getCompressionRatio() {
+    long raw = compressedRawBytes.sum();
+    return raw == 0 ? 1.0 : (double) compressedBytes.sum() / raw;
+  }
+
+  /**
+   * Requests by raw body size, one entry per power of two size range that has seen a request, from
+   * the smallest size up.
+   *
+   * @return SizeBucket list
+   */
+  public List<SizeBucket> getSizeDistribution() {
+    List<SizeBucket> distribution = new ArrayList<>();
+
+    for (int i = 0; i < SIZE_BUCKETS; i++) {
+      long count = sizes[i].requests.sum();
+
+      if (count > 0) {
+        long min = i == 0 ? 0 : 1L << (i - 1);
+        long max = i == SIZE_BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+        distribution.add(new SizeBucket(min, max, count, sizes[i].compressedRequests.sum(),
+            sizes[i].rawBytes.sum(), sizes[i].sentBytes.sum()));
+      }
+    }
+
+    return distribution;
+  }
+
+  /**
+   * Bucket 0 holds empty bodies, bucket i bodies of 2^(i-1) to 2^i - 1 bytes.
+   */
+  private static int bucket(long raw) {
+    return raw <= 0 ? 0 : Math.min(SIZE_BUCKETS - Long.numberOfLeadingZeros(raw),
+        SIZE_BUCKETS - 1);
+  }
+
+  private static final class Bucket {
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder compressedRequests = new LongAdder();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+
+    void record(long raw, long sent, boolean compressed) {
+      requests.increment();
+      rawBytes.add(raw);
+      sentBytes.add(sent);
+
+      if (compressed) {
+        compressedRequests.increment();
+      }
+    }
+  }
+
+  /**
+   * Requests whose raw body size was between minBytes and maxBytes, inclusive.
+   */
+  public static final class SizeBucket {
+    private final long minBytes;
+    private final long maxBytes;
+    private final long requests;
+    private final long compressedRequests;
+    private final long rawBytes;
+    private final long sentBytes;
+
+    SizeBucket(long minBytes, long maxBytes, long requests, long compressedRequests,
+               long rawBytes, long sentBytes) {
+      this.minBytes = minBytes;
+      this.maxBytes = maxBytes;
+      this.requests = requests;
+      this.compressedRequests = compressedRequests;
+      this.rawBytes = rawBytes;
+      this.sentBytes = sentBytes;
+    }
+
+    public long getMinBytes() {
+      return minBytes;
+    }
+
+    public long getMaxBytes() {
+      return maxBytes;
+    }
+
+    public long getRequests() {
+      return requests;
+    }
+
+    public long getCompressedRequests() {
+      return compressedRequests;
+    }
+
+    public long getRawBytes() {
+      return rawBytes;
+    }
+
+    public long getSentBytes() {
+      return sentBytes;
+    }
+
+    /**
+     * Sent size as a fraction of the raw size for requests of this size.
+     *
+     * @return ratio, 1 when none were compressed
+     */
+    public double getSentRatio() {
+      return rawBytes == 0 ? 1.0 : (double) sentBytes / rawBytes;
+    }
+
+    @Override
+    public String toString() {
+      return "SizeBucket{minBytes=" + minBytes + ", maxBytes=" + maxBytes + ", requests="
+          + requests + ", compressedRequests=" + compressedRequests + ", rawBytes=" + rawBytes
+          + ", sentBytes=" + sentBytes + "}";
+    }
+  }
+}
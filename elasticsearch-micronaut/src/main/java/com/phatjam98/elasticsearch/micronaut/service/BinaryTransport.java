@@ -0,0 +1,198 @@
+package com.phatjam98.elasticsearch.micronaut.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.ErrorResponse;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonpDeserializer;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.protobuf.GeneratedMessageV3;
+import com.phatjam98.elasticsearch.utils.ProtoJacksonModule;
+import com.phatjam98.elasticsearch.utils.ProtoJsonWriter;
+import jakarta.json.stream.JsonParser;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends search and bulk requests with SMILE or CBOR bodies over the low level {@link RestClient}
+ * of the Elasticsearch client, and reads the responses in the same format.  Requests are built
+ * from the client's own endpoint definitions and models so callers get the usual response
+ * types; only the bytes on the wire differ.
+ */
+final class BinaryTransport {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BinaryTransport.class);
+
+  private final RestClient restClient;
+  private final TransportFormat format;
+  private final JacksonJsonpMapper mapper;
+  private final ContentType contentType;
+  private final RequestOptions options;
+
+  private BinaryTransport(RestClient restClient, TransportFormat format) {
+    this.restClient = restClient;
+    this.format = format;
+    this.mapper = ProtoJacksonModule.jsonpMapper(format.jsonFactory());
+    this.contentType = ContentType.create(format.mimeType());
+    this.options = RequestOptions.DEFAULT.toBuilder()
+        .addHeader("Accept", format.mimeType())
+        .build();
+  }
+
+  /**
+   * Creates a binary transport for the client, or returns null when the format is JSON and the
+   * client should be used as is.
+   *
+   * @param client ElasticsearchAsyncClient
+   * @param format configured TransportFormat
+   * @return BinaryTransport or null
+   */
+  static BinaryTransport create(ElasticsearchAsyncClient client, TransportFormat format) {
+    if (format == TransportFormat.JSON) {
+      return null;
+    }
+
+    if (!(client._transport() instanceof RestClientTransport)) {
+      LOGGER.warn("Transport format {} needs a RestClientTransport, falling back to JSON", format);
+      return null;
+    }
+
+    return new BinaryTransport(((RestClientTransport) client._transport()).restClient(), format);
+  }
+
+  TransportFormat format() {
+    return format;
+  }
+
+  /**
+   * Executes a search with a binary request body.
+   *
+   * @param searchRequest SearchRequest
+   * @param klass         Class to decode hit sources into
+   * @param <T>           Class of the Protobuf resource
+   * @return CompletableFuture of the SearchResponse
+   */
+  <T> CompletableFuture<SearchResponse<T>> search(SearchRequest searchRequest, Class<T> klass) {
+    var endpoint = SearchRequest._ENDPOINT;
+    var request = new Request(endpoint.method(searchRequest), endpoint.requestUrl(searchRequest));
+    request.addParameters(endpoint.queryParameters(searchRequest));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    try (var generator = mapper.jsonProvider().createGenerator(out)) {
+      searchRequest.serialize(generator, mapper);
+    }
+
+    request.setEntity(new ByteArrayEntity(out.toByteArray(), contentType));
+
+    return perform("search", request,
+        SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(klass)));
+  }
+
+  /**
+   * Indexes protobuf documents with a binary bulk body.  Each action and document is its own
+   * binary document, separated by the format's stream separator.
+   *
+   * @param indexName String name of the index
+   * @param docs      List of protobuf documents to index
+   * @param idFn      Function returning the document id, or null to let Elasticsearch assign one
+   * @param <T>       Class of the Protobuf resource
+   * @return CompletableFuture of the BulkResponse
+   * @throws IOException error encoding the documents
+   */
+  <T extends GeneratedMessageV3> CompletableFuture<BulkResponse> bulkIndex(
+      String indexName, List<T> docs, Function<T, String> idFn) throws IOException {
+    JsonFactory factory = mapper.objectMapper().getFactory();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    for (T doc : docs) {
+      String id = idFn == null ? null : idFn.apply(doc);
+
+      try (JsonGenerator generator = factory.createGenerator(out)) {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("index");
+
+        if (id != null) {
+          generator.writeStringField("_id", id);
+        }
+
+        generator.writeEndObject();
+        generator.writeEndObject();
+      }
+
+      out.write(format.bulkSeparator());
+
+      try (JsonGenerator generator = factory.createGenerator(out)) {
+        ProtoJsonWriter.write(doc, generator);
+      }
+
+      out.write(format.bulkSeparator());
+    }
+
+    var request = new Request("POST", "/" + indexName + "/_bulk");
+    request.setEntity(new ByteArrayEntity(out.toByteArray(), contentType));
+
+    return perform("bulk", request, BulkResponse._DESERIALIZER);
+  }
+
+  private <R> CompletableFuture<R> perform(String endpointId, Request request,
+                                           JsonpDeserializer<R> deserializer) {
+    request.setOptions(options);
+    CompletableFuture<R> future = new CompletableFuture<>();
+
+    restClient.performRequestAsync(request, new ResponseListener() {
+      @Override
+      public void onSuccess(Response response) {
+        try {
+          future.complete(decode(response.getEntity(), deserializer));
+        } catch (Exception e) {
+          future.completeExceptionally(e);
+        }
+      }
+
+      @Override
+      public void onFailure(Exception exception) {
+        if (exception instanceof ResponseException) {
+          try {
+            ErrorResponse error = decode(((ResponseException) exception).getResponse().getEntity(),
+                ErrorResponse._DESERIALIZER);
+            future.completeExceptionally(new ElasticsearchException(endpointId, error));
+            return;
+          } catch (Exception e) {
+            exception.addSuppressed(e);
+          }
+        }
+
+        future.completeExceptionally(exception);
+      }
+    });
+
+    return future;
+  }
+
+  private <R> R decode(HttpEntity entity, JsonpDeserializer<R> deserializer) throws IOException {
+    try (InputStream in = entity.getContent();
+         JsonParser parser = mapper.jsonProvider().createParser(in)) {
+      return deserializer.deserialize(parser, mapper);
+    }
+  }
+}
@@ -6,12 +6,25 @@ import co.elastic.clients.elasticsearch._helpers.bulk.BulkListener;
 import co.elastic.clients.elasticsearch.cluster.HealthResponse;
 import co.elastic.clients.elasticsearch.core.BulkRequest;
 import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperationBase;
 import co.elastic.clients.util.BinaryData;
 import co.elastic.clients.util.ContentType;
+import com.google.protobuf.GeneratedMessageV3;
+import com.phatjam98.elasticsearch.utils.ProtoJsonWriter;
+import com.phatjam98.elasticsearch.utils.ReusableByteArrayOutputStream;
 import io.micronaut.context.annotation.Property;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,6 +33,12 @@ import org.slf4j.LoggerFactory;
  */
 public class BulkElasticsearchService extends ElasticsearchService {
   private static final Logger LOGGER = LoggerFactory.getLogger(BulkElasticsearchService.class);
+  private static final int ARENA_SIZE = 1024 * 1024;
+  private static final int MAX_POOLED_ARENA_SIZE = 64 * 1024 * 1024;
+  private static final int ARENA_POOL_SIZE = 4;
+
+  private final BlockingQueue<ReusableByteArrayOutputStream> arenas =
+      new ArrayBlockingQueue<>(ARENA_POOL_SIZE);
 
   @Property(name = "elasticsearch.bulk.bulkActions")
   private int bulkActions;
@@ -64,11 +83,14 @@ public class BulkElasticsearchService extends ElasticsearchService {
    * @return BulkResponse indicating status of the request
    */
   public BulkResponse bulk(BulkRequest bulkRequest) {
+    var indices = indices(bulkRequest);
     var cf = esAsyncClient.bulk(bulkRequest)
         .whenComplete((bulkResponse, throwable) -> {
           if (throwable != null) {
             LOGGER.error("Error while trying to bulk update documents.", throwable);
           }
+
+          invalidateSearchCache(indices);
         });
 
     BulkResponse response = null;
@@ -109,6 +131,155 @@ public class BulkElasticsearchService extends ElasticsearchService {
     return bulkResponse;
   }
 
+  /**
+   * Bulk API access to index a group of protobuf documents in the given index.  Every document is
+   * written as JSON into one pooled buffer and sent as a slice of it, so no per-document String or
+   * byte array is created.  With a SMILE transport format the body is sent as SMILE instead.
+   *
+   * @param indexName String name of the index.
+   * @param docs      List of protobuf documents to index.
+   * @param idFn      Function returning the document id, or null to let Elasticsearch assign one.
+   * @param <T>       Class of the Protobuf resource.
+   * @return BulkResponse, or null if the documents could not be serialized.
+   */
+  public <T extends GeneratedMessageV3> BulkResponse bulkIndex(String indexName, List<T> docs,
+                                                               Function<T, String> idFn) {
+    if (binaryTransport != null && binaryTransport.format().supportsBulk()) {
+      return bulkIndexBinary(indexName, docs, idFn);
+    }
+
+    ReusableByteArrayOutputStream arena = acquireArena();
+
+    try {
+      int[] offsets = new int[docs.size() + 1];
+
+      for (int i = 0; i < docs.size(); i++) {
+        offsets[i] = arena.size();
+        ProtoJsonWriter.write(docs.get(i), arena);
+      }
+
+      offsets[docs.size()] = arena.size();
+
+      // Slices are taken once writing is done, since the backing array may grow while writing.
+      byte[] bytes = arena.buffer();
+      BulkRequest.Builder bulkRequest = new BulkRequest.Builder();
+      bulkRequest.index(indexName);
+
+      for (int i = 0; i < docs.size(); i++) {
+        BinaryData data = BinaryData.of(bytes, offsets[i], offsets[i + 1] - offsets[i],
+            ContentType.APPLICATION_JSON);
+        String id = idFn == null ? null : idFn.apply(docs.get(i));
+        bulkRequest.operations(op -> op.index(idx -> idx.index(indexName).id(id).document(data)));
+      }
+
+      return bulk(bulkRequest.build());
+    } catch (IOException e) {
+      LOGGER.error("Error serializing documents to bulk index into {}", indexName, e);
+      return null;
+    } finally {
+      releaseArena(arena);
+    }
+  }
+
+  private <T extends GeneratedMessageV3> BulkResponse bulkIndexBinary(String indexName,
+                                                                      List<T> docs,
+                                                                      Function<T, String> idFn) {
+    BulkResponse response = null;
+
+    try {
+      var cf = binaryTransport.bulkIndex(indexName, docs, idFn)
+          .whenComplete((bulkResponse, throwable) -> {
+            if (throwable != null) {
+              LOGGER.error("Error while trying to bulk update documents.", throwable);
+            }
+
+            invalidateSearchCache(List.of(indexName));
+          });
+      response = cf.get();
+    } catch (IOException e) {
+      LOGGER.error("Error serializing documents to bulk index into {}", indexName, e);
+    } catch (InterruptedException e) {
+      LOGGER.error(
+          "Thread was interrupted while trying to bulk update documents.", e);
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      LOGGER.error(
+          "Execution exception while trying to bulk update documents.", e);
+    }
+
+    return response;
+  }
+
+  /**
+   * Bulk API access to index a group of pre-encoded JSON documents in the given index.  Each
+   * buffer's remaining bytes are sent without copying when it is backed by an array.
+   *
+   * @param indexName String name of the index.
+   * @param docs      Map of document id to UTF-8 JSON document.
+   * @return BulkResponse
+   */
+  public BulkResponse bulkIndexEncoded(String indexName, Map<String, ByteBuffer> docs) {
+    BulkRequest.Builder bulkRequest = new BulkRequest.Builder();
+    bulkRequest.index(indexName);
+
+    for (Map.Entry<String, ByteBuffer> doc : docs.entrySet()) {
+      BinaryData data = binaryData(doc.getValue());
+      bulkRequest.operations(op -> op.index(idx -> idx.index(indexName).id(doc.getKey())
+          .document(data)));
+    }
+
+    return bulk(bulkRequest.build());
+  }
+
+  /**
+   * Names of the indices a bulk request writes to, from the request default and each operation.
+   */
+  private static Set<String> indices(BulkRequest bulkRequest) {
+    Set<String> indices = new HashSet<>();
+
+    if (bulkRequest.index() != null) {
+      indices.add(bulkRequest.index());
+    }
+
+    for (BulkOperation operation : bulkRequest.operations()) {
+      if (operation._get() instanceof BulkOperationBase
+          && ((BulkOperationBase) operation._get()).index() != null) {
+        indices.add(((BulkOperationBase) operation._get()).index());
+      }
+    }
+
+    return indices;
+  }
+
+  private static BinaryData binaryData(ByteBuffer buffer) {
+    if (buffer.hasArray()) {
+      return BinaryData.of(buffer.array(), buffer.arrayOffset() + buffer.position(),
+          buffer.remaining(), ContentType.APPLICATION_JSON);
+    }
+
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+
+    return BinaryData.of(bytes, ContentType.APPLICATION_JSON);
+  }
+
+  private ReusableByteArrayOutputStream acquireArena() {
+    ReusableByteArrayOutputStream arena = arenas.poll();
+    return arena != null ? arena : new ReusableByteArrayOutputStream(ARENA_SIZE);
+  }
+
+  /**
+   * Returns an arena to the pool once its request is done with it.  Oversized arenas are
+   * dropped, as are arenas whose request may still be in flight because the caller was
+   * interrupted while waiting for the response.
+   */
+  private void releaseArena(ReusableByteArrayOutputStream arena) {
+    if (arena.capacity() <= MAX_POOLED_ARENA_SIZE && !Thread.currentThread().isInterrupted()) {
+      arena.reset();
+      arenas.offer(arena);
+    }
+  }
+
   /**
    * Gets a {@link BulkIngester} for the given bulk processor name.
    *
@@ -125,11 +296,13 @@ public class BulkElasticsearchService extends ElasticsearchService {
       public void afterBulk(long executionId, BulkRequest request, List list,
                             BulkResponse response) {
         //TODO: Add logging and metrics here
+        invalidateSearchCache(indices(request));
       }
 
       @Override
       public void afterBulk(long executionId, BulkRequest request, List list, Throwable failure) {
         //TODO: Add logging and metrics here
+        invalidateSearchCache(indices(request));
       }
     };
 
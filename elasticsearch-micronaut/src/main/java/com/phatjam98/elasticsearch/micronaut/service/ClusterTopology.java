@@ -0,0 +1,96 @@
+package com.phatjam98.elasticsearch.micronaut.service;
+
+import co.elastic.clients.elasticsearch._types.HealthStatus;
+import co.elastic.clients.elasticsearch.cluster.HealthResponse;
+import java.time.Instant;
+
+/**
+ * Snapshot of the cluster taken from a {@link HealthResponse}, with the shard and replica counts
+ * new indices should be created with.  Replicas are one less than the number of data nodes so
+ * every node can hold a copy.  Shards do not follow the topology, every index gets
+ * {@link #DEFAULT_SHARDS}.
+ */
+public final class ClusterTopology {
+  /**
+   * Shards per index.  Generally we want 1 shard per 10GB of data; at this time we are nowhere near
+   * that, so every index gets 3.
+   */
+  static final int DEFAULT_SHARDS = 3;
+
+  /**
+   * Replicas per index while the cluster size is unknown.  The data node count would give zero,
+   * which could leave an index created then without copies for good; one copy is safe on any
+   * cluster of two or more data nodes.
+   */
+  static final int DEFAULT_REPLICAS = 1;
+
+  private final int dataNodes;
+  private final HealthStatus status;
+  private final int shards;
+  private final int replicas;
+  private final Instant refreshedAt;
+
+  private ClusterTopology(int dataNodes, HealthStatus status, int shards, int replicas,
+                          Instant refreshedAt) {
+    this.dataNodes = dataNodes;
+    this.status = status;
+    this.shards = shards;
+    this.replicas = replicas;
+    this.refreshedAt = refreshedAt;
+  }
+
+  /**
+   * Creates the topology for a cluster health response.
+   *
+   * @param health HealthResponse
+   * @return ClusterTopology
+   */
+  static ClusterTopology from(HealthResponse health) {
+    return new ClusterTopology(health.numberOfDataNodes(), health.status(), DEFAULT_SHARDS,
+        Math.max(health.numberOfDataNodes() - 1, 0), Instant.now());
+  }
+
+  /**
+   * Topology used before the cluster has answered, recommending {@link #DEFAULT_REPLICAS}.
+   *
+   * @return ClusterTopology with no data nodes and no status
+   */
+  static ClusterTopology unknown() {
+    return new ClusterTopology(0, null, DEFAULT_SHARDS, DEFAULT_REPLICAS, Instant.EPOCH);
+  }
+
+  public int getDataNodes() {
+    return dataNodes;
+  }
+
+  /**
+   * Cluster status when the snapshot was taken.
+   *
+   * @return HealthStatus, or null if the cluster has not answered yet
+   */
+  public HealthStatus getStatus() {
+    return status;
+  }
+
+  public int getShards() {
+    return shards;
+  }
+
+  public int getReplicas() {
+    return replicas;
+  }
+
+  public Instant getRefreshedAt() {
+    return refreshedAt;
+  }
+
+  public boolean isKnown() {
+    return status != null;
+  }
+
+  @Override
+  public String toString() {
+    return "ClusterTopology{dataNodes=" + dataNodes + ", status=" + status + ", shards=" + shards
+        + ", replicas=" + replicas + ", refreshedAt=" + refreshedAt + "}";
+  }
+}
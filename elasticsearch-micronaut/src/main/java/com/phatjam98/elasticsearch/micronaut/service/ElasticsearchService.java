@@ -2,24 +2,26 @@ package com.phatjam98.elasticsearch.micronaut.service;
 
 import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch._types.ElasticsearchException;
-import co.elastic.clients.elasticsearch._types.mapping.Property;
+import co.elastic.clients.elasticsearch._types.SortOrder;
 import co.elastic.clients.elasticsearch._types.mapping.TypeMapping;
 import co.elastic.clients.elasticsearch.cluster.HealthResponse;
+import co.elastic.clients.elasticsearch.core.CountResponse;
 import co.elastic.clients.elasticsearch.core.CreateRequest;
 import co.elastic.clients.elasticsearch.core.CreateResponse;
+import co.elastic.clients.elasticsearch.core.OpenPointInTimeResponse;
 import co.elastic.clients.elasticsearch.core.ReindexRequest;
 import co.elastic.clients.elasticsearch.core.ReindexResponse;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.UpdateResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
 import co.elastic.clients.elasticsearch.indices.CloneIndexResponse;
 import co.elastic.clients.elasticsearch.indices.CreateIndexRequest;
 import co.elastic.clients.elasticsearch.indices.CreateIndexResponse;
 import co.elastic.clients.elasticsearch.indices.DeleteIndexResponse;
 import co.elastic.clients.elasticsearch.indices.ExistsRequest;
 import co.elastic.clients.elasticsearch.indices.FreezeResponse;
-import co.elastic.clients.elasticsearch.indices.GetAliasResponse;
-import co.elastic.clients.elasticsearch.indices.GetMappingResponse;
+import co.elastic.clients.elasticsearch.indices.IndexState;
 import co.elastic.clients.elasticsearch.indices.PutMappingResponse;
 import co.elastic.clients.elasticsearch.indices.RefreshRequest;
 import co.elastic.clients.elasticsearch.indices.RefreshResponse;
@@ -29,25 +31,53 @@ import co.elastic.clients.elasticsearch.indices.update_aliases.Action;
 import co.elastic.clients.elasticsearch.indices.update_aliases.ActionVariant;
 import co.elastic.clients.transport.endpoints.BooleanResponse;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.CacheStats;
 import com.google.protobuf.GeneratedMessageV3;
+import com.phatjam98.elasticsearch.utils.AggregationUtils;
+import com.phatjam98.elasticsearch.utils.CursorUtils;
 import com.phatjam98.elasticsearch.utils.IndexUtils;
 import com.phatjam98.elasticsearch.utils.MappingsComparator;
+import com.phatjam98.elasticsearch.utils.RequestBuilder;
+import com.phatjam98.protos.service.protos.AggregationCriteria;
+import com.phatjam98.protos.service.protos.AggregationResponse;
+import com.phatjam98.protos.service.protos.SearchCriteria;
+import io.micronaut.context.annotation.Property;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.Nullable;
 import io.micronaut.core.io.ResourceResolver;
 import io.micronaut.core.io.scan.ClassPathResourceLoader;
+import jakarta.annotation.PreDestroy;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.elasticsearch.ExceptionsHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 
 /**
@@ -57,27 +87,329 @@ import org.slf4j.LoggerFactory;
 public class ElasticsearchService {
   private static final Logger LOGGER = LoggerFactory.getLogger(ElasticsearchService.class);
 
+  /**
+   * Page size of {@link #searchStream} when the criteria does not set one.
+   */
+  public static final int DEFAULT_STREAM_PAGE_SIZE = 1000;
+
+  private static final String STREAM_KEEP_ALIVE = "1m";
+
   @Inject
   ElasticsearchAsyncClient esAsyncClient;
 
-  private final int shards;
-  private final int replicas;
+  BinaryTransport binaryTransport;
+
+  SearchCoalescer searchCoalescer;
+
+  GetCoalescer getCoalescer;
+
+  SearchResultCache searchResultCache;
+
+  PointInTimeManager pointInTimeManager;
+
+  private final RequestBuilder requestBuilder = new RequestBuilder();
+  private final AtomicReference<ClusterTopology> topology = new AtomicReference<>();
+  private final AtomicReference<CompletableFuture<ClusterTopology>> topologyRefresh =
+      new AtomicReference<>();
+
+  private Duration topologyRefreshInterval = Duration.ofMinutes(5);
+  private Integer shardsOverride;
+  private Integer replicasOverride;
+  private int bootstrapParallelism = 4;
 
   /**
-   * Set replicas and shards based on the Elasticsearch {@link HealthResponse}.  Set replicas
-   * to 1 less than total number of Data Nodes.
+   * Starts fetching the cluster topology in the background and returns immediately.  Replicas and
+   * shards for new indices come from the {@link ClusterTopology} once the cluster has answered.
    *
    * @param esAsyncClient ElasticsearchAsyncClient
    *                      {@link ElasticsearchAsyncClient}
    */
   public ElasticsearchService(ElasticsearchAsyncClient esAsyncClient) {
     this.esAsyncClient = esAsyncClient;
-    HealthResponse cluster = clusterHealth();
+    refreshTopologyAsync();
+  }
+
+  /**
+   * Sets the content type of search and bulk bodies: json (default), smile or cbor.  Binary
+   * formats are opt-in with {@code elasticsearch.transport.format}; all other requests stay JSON.
+   *
+   * @param format String name of the {@link TransportFormat}
+   */
+  @Inject
+  public void setTransportFormat(@Value("${elasticsearch.transport.format:json}") String format) {
+    this.binaryTransport = BinaryTransport.create(esAsyncClient, TransportFormat.from(format));
+  }
+
+  /**
+   * Enables coalescing of concurrent searches into {@code _msearch} requests.  Searches arriving
+   * within the window of the first are sent together, up to maxBatch at a time.  Off by default;
+   * enable with {@code elasticsearch.search.coalescing.enabled}.  Searches are not coalesced when
+   * a binary transport format is configured.
+   *
+   * @param enabled  whether to coalesce searches
+   * @param window   how long a batch waits for more searches
+   * @param maxBatch searches that fill a batch and send it immediately
+   */
+  @Inject
+  public void setSearchCoalescing(
+      @Value("${elasticsearch.search.coalescing.enabled:false}") boolean enabled,
+      @Value("${elasticsearch.search.coalescing.window:2ms}") Duration window,
+      @Value("${elasticsearch.search.coalescing.max-batch:64}") int maxBatch) {
+    if (searchCoalescer != null) {
+      searchCoalescer.shutdown();
+    }
 
-    this.replicas = Math.max(cluster.numberOfDataNodes() - 1, 0);
-    // For now we will strictly set shards at 3.  Generally we want 1 shard per 10GB of data.
-    // At this time we are nowhere near that.  We will revisit this in the future.
-    this.shards = 3;
+    this.searchCoalescer = enabled ? SearchCoalescer.create(esAsyncClient, window, maxBatch)
+        : null;
+  }
+
+  /**
+   * Configures coalescing of {@link #getAsync} calls into {@code _mget} requests.  On by default
+   * with no window: gets issued while the previous batch is being dispatched share a request
+   * without waiting.  A window holds each batch open for longer.
+   *
+   * @param enabled  whether to coalesce gets
+   * @param window   how long a batch waits for more gets
+   * @param maxBatch ids that fill a batch and send it immediately
+   */
+  @Inject
+  public void setGetCoalescing(
+      @Value("${elasticsearch.get.coalescing.enabled:true}") boolean enabled,
+      @Value("${elasticsearch.get.coalescing.window:0ms}") Duration window,
+      @Value("${elasticsearch.get.coalescing.max-batch:256}") int maxBatch) {
+    if (getCoalescer != null) {
+      getCoalescer.shutdown();
+    }
+
+    this.getCoalescer = enabled ? new GetCoalescer(esAsyncClient, window, maxBatch) : null;
+  }
+
+  /**
+   * Batch size and wait time of coalesced searches.
+   *
+   * @return SearchCoalescingStats, or null when searches are not coalesced
+   */
+  public SearchCoalescingStats getSearchCoalescingStats() {
+    return searchCoalescer == null ? null : searchCoalescer.stats();
+  }
+
+  /**
+   * Enables caching of {@link #search(String, SearchCriteria, Class)} results.  Entries are
+   * bounded by their estimated size in bytes, expire after the ttl and are dropped whenever this
+   * service writes to or refreshes their index.  Off by default; enable with
+   * {@code elasticsearch.search.cache.enabled}.
+   *
+   * @param enabled  whether to cache search results
+   * @param maxBytes approximate maximum size of the cache
+   * @param ttl      how long a result is served from the cache
+   */
+  @Inject
+  public void setSearchCache(
+      @Value("${elasticsearch.search.cache.enabled:false}") boolean enabled,
+      @Value("${elasticsearch.search.cache.max-bytes:67108864}") long maxBytes,
+      @Value("${elasticsearch.search.cache.ttl:10s}") Duration ttl) {
+    this.searchResultCache = enabled ? new SearchResultCache(maxBytes, ttl) : null;
+  }
+
+  /**
+   * Hit, miss and eviction counts of the search result cache.
+   *
+   * @return CacheStats, or null when search results are not cached
+   */
+  public CacheStats getSearchCacheStats() {
+    return searchResultCache == null ? null : searchResultCache.stats();
+  }
+
+  /**
+   * Sets how many compiled queries are kept so repeated {@link SearchCriteria} skip building their
+   * query.  Zero turns the cache off.
+   *
+   * @param maxSize maximum number of cached queries
+   */
+  @Inject
+  public void setQueryCacheSize(
+      @Value("${elasticsearch.search.query-cache.max-size:1000}") long maxSize) {
+    requestBuilder.setQueryCacheSize(maxSize);
+  }
+
+  /**
+   * Hit, miss and eviction counts of the compiled query cache.
+   *
+   * @return CacheStats
+   */
+  public CacheStats getQueryCacheStats() {
+    return requestBuilder.getQueryCacheStats();
+  }
+
+  /**
+   * Configures the points in time opened for search_after pagination with
+   * {@link #search(String, SearchCriteria, Class)}.  The first page opens a point in time kept
+   * alive for keepAlive; later pages extend it by twice their average interval, up to
+   * maxKeepAlive.  It is closed after the last page or once idle for idleTimeout, and no more than
+   * maxOpen are open at once.  On by default.
+   *
+   * @param enabled      whether to open points in time for search_after pagination
+   * @param keepAlive    keep alive of a new point in time
+   * @param maxKeepAlive longest keep alive sent with a page
+   * @param idleTimeout  time without a page after which a point in time is closed
+   * @param maxOpen      points in time open at once, beyond which first pages fail
+   */
+  @Inject
+  public void setPointInTimeConfig(
+      @Value("${elasticsearch.pit.enabled:true}") boolean enabled,
+      @Value("${elasticsearch.pit.keep-alive:1m}") Duration keepAlive,
+      @Value("${elasticsearch.pit.max-keep-alive:5m}") Duration maxKeepAlive,
+      @Value("${elasticsearch.pit.idle-timeout:5m}") Duration idleTimeout,
+      @Value("${elasticsearch.pit.max-open:100}") int maxOpen) {
+    if (pointInTimeManager != null) {
+      pointInTimeManager.shutdown();
+    }
+
+    this.pointInTimeManager = enabled
+        ? new PointInTimeManager(esAsyncClient, keepAlive, maxKeepAlive, idleTimeout, maxOpen)
+        : null;
+  }
+
+  /**
+   * Open, opened, closed and expired points in time of search_after pagination.
+   *
+   * @return PointInTimeStats, or null when points in time are not managed
+   */
+  public PointInTimeStats getPointInTimeStats() {
+    return pointInTimeManager == null ? null : pointInTimeManager.stats();
+  }
+
+  /**
+   * Stops the threads of the search and get coalescers and the point in time sweeper, and closes
+   * the points in time still open.  Called when the bean is destroyed.
+   */
+  @PreDestroy
+  public void close() {
+    if (searchCoalescer != null) {
+      searchCoalescer.shutdown();
+    }
+
+    if (getCoalescer != null) {
+      getCoalescer.shutdown();
+    }
+
+    if (pointInTimeManager != null) {
+      pointInTimeManager.shutdown();
+    }
+  }
+
+  /**
+   * Drops cached search results for indices this service has written to.  An empty collection
+   * means every index.
+   *
+   * @param indices names of the indices written to
+   */
+  void invalidateSearchCache(Collection<String> indices) {
+    if (searchResultCache == null) {
+      return;
+    }
+
+    if (indices.isEmpty()) {
+      searchResultCache.invalidateAll();
+    } else {
+      searchResultCache.invalidate(indices);
+    }
+  }
+
+  /**
+   * Configures how new indices are sized.  Shards and replicas default to the
+   * {@link ClusterTopology} recommendations unless {@code elasticsearch.shards} or
+   * {@code elasticsearch.replicas} are set.
+   *
+   * @param refreshInterval how long a topology snapshot is used before it is refreshed
+   * @param shards          shards for new indices, or null for the recommendation
+   * @param replicas        replicas for new indices, or null for the recommendation
+   */
+  @Inject
+  public void setTopologyConfig(
+      @Value("${elasticsearch.topology.refresh-interval:5m}") Duration refreshInterval,
+      @Property(name = "elasticsearch.shards") @Nullable Integer shards,
+      @Property(name = "elasticsearch.replicas") @Nullable Integer replicas) {
+    this.topologyRefreshInterval = refreshInterval;
+    this.shardsOverride = shards;
+    this.replicasOverride = replicas;
+  }
+
+  /**
+   * Returns the latest cluster topology without waiting for the cluster.  A stale snapshot is
+   * refreshed in the background; until the first refresh completes an unknown topology is
+   * returned.
+   *
+   * @return ClusterTopology
+   */
+  public ClusterTopology topology() {
+    var current = topology.get();
+
+    if (current == null || isStale(current)) {
+      refreshTopologyAsync();
+    }
+
+    return current == null ? ClusterTopology.unknown() : current;
+  }
+
+  /**
+   * Returns the cluster topology, waiting for the first refresh if the cluster has not answered
+   * yet.  Later calls complete immediately with the cached snapshot.
+   *
+   * @return CompletableFuture of the ClusterTopology
+   */
+  public CompletableFuture<ClusterTopology> topologyAsync() {
+    var current = topology.get();
+
+    if (current == null) {
+      return refreshTopologyAsync();
+    }
+
+    if (isStale(current)) {
+      refreshTopologyAsync();
+    }
+
+    return CompletableFuture.completedFuture(current);
+  }
+
+  /**
+   * Fetches the cluster health and replaces the cached topology.  Only one refresh runs at a
+   * time; concurrent callers share it.  If the cluster cannot be reached the previous snapshot is
+   * kept, or an unknown topology is returned if there is none.
+   *
+   * @return CompletableFuture of the refreshed ClusterTopology
+   */
+  public CompletableFuture<ClusterTopology> refreshTopologyAsync() {
+    var refresh = new CompletableFuture<ClusterTopology>();
+    var inFlight = topologyRefresh.compareAndExchange(null, refresh);
+
+    if (inFlight != null) {
+      return inFlight;
+    }
+
+    clusterHealthAsync().handle((health, exception) -> {
+      ClusterTopology refreshed;
+
+      if (exception == null) {
+        refreshed = ClusterTopology.from(health);
+        topology.set(refreshed);
+        LOGGER.debug("Cluster topology refreshed: {}", refreshed);
+      } else {
+        var current = topology.get();
+        refreshed = current == null ? ClusterTopology.unknown() : current;
+      }
+
+      topologyRefresh.set(null);
+      refresh.complete(refreshed);
+
+      return refreshed;
+    });
+
+    return refresh;
+  }
+
+  private boolean isStale(ClusterTopology current) {
+    return current.getRefreshedAt().plus(topologyRefreshInterval).isBefore(Instant.now());
   }
 
   /**
@@ -87,8 +419,18 @@ public class ElasticsearchService {
    * @return Boolean
    */
   public Boolean indexExists(String index) {
-    BooleanResponse booleanResponse = null;
-    var cf = esAsyncClient.indices().exists(
+    return Boolean.TRUE.equals(await(indexExistsAsync(index), OnFailure.LOG,
+        "check if the index {} exists", index));
+  }
+
+  /**
+   * Checks if an index exists without blocking.
+   *
+   * @param index String name of the index to check.
+   * @return CompletableFuture of the result
+   */
+  public CompletableFuture<Boolean> indexExistsAsync(String index) {
+    return esAsyncClient.indices().exists(
         new ExistsRequest.Builder().index(index).build()
     ).whenComplete((response, exception) -> {
       if (exception != null) {
@@ -96,18 +438,7 @@ public class ElasticsearchService {
       } else {
         LOGGER.info("Index {} exists: {}", index, response.value());
       }
-    });
-
-    try {
-      booleanResponse = cf.get();
-    } catch (InterruptedException e) {
-      LOGGER.error("Thread was interrupted while checking if the index {} exists", index, e);
-      Thread.currentThread().interrupt();
-    } catch (ExecutionException e) {
-      LOGGER.error("Execution exception while checking if the index {} exists", index, e);
-    }
-
-    return booleanResponse != null && booleanResponse.value();
+    }).thenApply(BooleanResponse::value);
   }
 
   /**
@@ -118,27 +449,40 @@ public class ElasticsearchService {
    * @return CreateIndexResponse
    */
   public CreateIndexResponse createIndex(String indexName, TypeMapping mappings) {
-    CreateIndexResponse response = null;
+    return await(createIndexAsync(indexName, mappings), OnFailure.RUNTIME,
+        "create the index {}", indexName);
+  }
 
-    var cf = esAsyncClient.indices().create(
-        new CreateIndexRequest.Builder().index(indexName)
-            .settings(s -> s.numberOfShards(Integer.toString(shards))
-                .numberOfReplicas(Integer.toString(replicas))).mappings(mappings).build()
-    ).whenComplete((resp, exception) -> {
+  /**
+   * Creates an index with the index name without blocking.  Shards and replicas come from the
+   * cached {@link ClusterTopology}; only the first call after startup waits for the cluster.
+   *
+   * @param indexName String name of the index to create
+   * @param mappings  Map mappings generated from resource
+   * @return CompletableFuture of the CreateIndexResponse
+   */
+  public CompletableFuture<CreateIndexResponse> createIndexAsync(String indexName,
+                                                                 TypeMapping mappings) {
+    return topologyAsync().thenCompose(cluster -> {
+      int shards = shardsOverride != null ? shardsOverride : cluster.getShards();
+      int replicas = replicasOverride != null ? replicasOverride : cluster.getReplicas();
+
+      if (!cluster.isKnown() && replicasOverride == null) {
+        LOGGER.warn("Cluster topology unknown, creating the index {} with {} replicas. Set "
+            + "elasticsearch.replicas to choose them.", indexName, replicas);
+      }
+
+      return esAsyncClient.indices().create(
+          new CreateIndexRequest.Builder().index(indexName)
+              .settings(s -> s.numberOfShards(Integer.toString(shards))
+                  .numberOfReplicas(Integer.toString(replicas))).mappings(mappings).build());
+    }).whenComplete((resp, exception) -> {
       if (exception != null) {
         LOGGER.error("Exception while creating the index {}", indexName, exception);
       } else {
         LOGGER.info("Index {} created: {}", indexName, resp.acknowledged());
       }
     });
-
-    try {
-      response = cf.get();
-    } catch (ExecutionException | InterruptedException e) {
-      throw new RuntimeException(e);
-    }
-
-    return response;
   }
 
   /**
@@ -149,24 +493,25 @@ public class ElasticsearchService {
    * @see DeleteIndexResponse
    */
   public DeleteIndexResponse deleteIndex(String indexName) {
-    var cf = esAsyncClient.indices().delete(r -> r.index(indexName))
+    return await(deleteIndexAsync(indexName), OnFailure.RUNTIME, "delete the index {}",
+        indexName);
+  }
+
+  /**
+   * Deletes the given index without blocking.
+   *
+   * @param indexName String index name to delete
+   * @return CompletableFuture of the DeleteIndexResponse
+   */
+  public CompletableFuture<DeleteIndexResponse> deleteIndexAsync(String indexName) {
+    return esAsyncClient.indices().delete(r -> r.index(indexName))
         .whenComplete((resp, exception) -> {
           if (exception != null) {
             LOGGER.error("Exception while deleting the index {}", indexName, exception);
           } else {
             LOGGER.info("Index {} deleted: {}", indexName, resp.acknowledged());
           }
-        });
-
-    DeleteIndexResponse response = null;
-
-    try {
-      response = cf.get();
-    } catch (ExecutionException | InterruptedException e) {
-      throw new RuntimeException(e);
-    }
-
-    return response;
+        }).whenComplete((resp, exception) -> invalidateSearchCache(List.of(indexName)));
   }
 
   /**
@@ -179,7 +524,21 @@ public class ElasticsearchService {
    * @return CreateResponse
    */
   public CreateResponse create(String indexName, String docId, String jsonDoc) {
-    var cf = esAsyncClient.create(
+    return await(createAsync(indexName, docId, jsonDoc), OnFailure.LOG,
+        "create a document. index: {}, doc: {}", indexName, jsonDoc);
+  }
+
+  /**
+   * Creates a new document in the given index without blocking.
+   *
+   * @param indexName String name of the index to create the document in.
+   * @param docId     String id of the document in elasticsearch.
+   * @param jsonDoc   String json string representation of the document.
+   * @return CompletableFuture of the CreateResponse
+   */
+  public CompletableFuture<CreateResponse> createAsync(String indexName, String docId,
+                                                       String jsonDoc) {
+    return esAsyncClient.create(
         new CreateRequest.Builder<>().index(indexName).id(docId)
             .withJson(new StringReader(jsonDoc)).build()
     ).whenComplete((response, exception) -> {
@@ -189,22 +548,7 @@ public class ElasticsearchService {
       } else {
         LOGGER.info("Document created. index: {}, doc: {}", indexName, jsonDoc);
       }
-    });
-
-    CreateResponse response = null;
-
-    try {
-      response = cf.get();
-    } catch (InterruptedException e) {
-      LOGGER.error("Thread was interrupted while trying to create a document. index: {}, doc: {}",
-          indexName, jsonDoc, e);
-      Thread.currentThread().interrupt();
-    } catch (ExecutionException e) {
-      LOGGER.error("Execution exception while trying to create a document. index: {}, doc: {}",
-          indexName, jsonDoc, e);
-    }
-
-    return response;
+    }).whenComplete((resp, exception) -> invalidateSearchCache(List.of(indexName)));
   }
 
   /**
@@ -215,9 +559,22 @@ public class ElasticsearchService {
    * @param docMap    Map json document
    * @return UpdateResponse indicating update result
    */
-
   public UpdateResponse<Map> update(String indexName, String docId, Map<String, Object> docMap) {
-    var cf = esAsyncClient.update(ur -> ur.index(indexName).id(docId).doc(docMap), Map.class)
+    return await(updateAsync(indexName, docId, docMap), OnFailure.LOG,
+        "update a document. index: {}, doc: {}", indexName, docMap);
+  }
+
+  /**
+   * Updates a document in Elasticsearch without blocking.
+   *
+   * @param indexName String name of the index
+   * @param docId     String Elasticsearch document ID
+   * @param docMap    Map json document
+   * @return CompletableFuture of the UpdateResponse
+   */
+  public CompletableFuture<UpdateResponse<Map>> updateAsync(String indexName, String docId,
+                                                            Map<String, Object> docMap) {
+    return esAsyncClient.update(ur -> ur.index(indexName).id(docId).doc(docMap), Map.class)
         .whenComplete((response, exception) -> {
           if (exception != null) {
             LOGGER.error("Exception while updating the document. index: {}, doc: {}", indexName,
@@ -225,34 +582,351 @@ public class ElasticsearchService {
           } else {
             LOGGER.info("Document updated. index: {}, doc: {}", indexName, docMap);
           }
+        }).whenComplete((resp, exception) -> invalidateSearchCache(List.of(indexName)));
+  }
+
+  /**
+   * Gets a document by id with the realtime GET API, decoding its source straight into klass.
+   *
+   * @param indexName String name of the index or alias
+   * @param id        String Elasticsearch document ID
+   * @param klass     Class to decode the source into, a Protobuf class or Map.
+   * @param <T>       Class of the Protobuf resource.
+   * @return the document source, or null if it does not exist
+   */
+  public <T> T get(String indexName, String id, Class<T> klass) {
+    return await(getAsync(indexName, id, klass), OnFailure.LOG,
+        "get a document. index: {}, id: {}", indexName, id);
+  }
+
+  /**
+   * Gets a document by id without blocking.  Concurrent gets against the same index are
+   * coalesced into a single {@code _mget} unless {@code elasticsearch.get.coalescing.enabled} is
+   * false.
+   *
+   * @param indexName String name of the index or alias
+   * @param id        String Elasticsearch document ID
+   * @param klass     Class to decode the source into, a Protobuf class or Map.
+   * @param <T>       Class of the Protobuf resource.
+   * @return CompletableFuture of the document source, completing with null if it does not exist
+   */
+  public <T> CompletableFuture<T> getAsync(String indexName, String id, Class<T> klass) {
+    if (getCoalescer != null) {
+      return getCoalescer.get(indexName, id, klass);
+    }
+
+    return esAsyncClient.get(r -> r.index(indexName).id(id), klass)
+        .whenComplete((response, exception) -> {
+          if (exception != null) {
+            LOGGER.error("Exception while getting a document. index: {}, id: {}", indexName, id,
+                exception);
+          }
+        }).thenApply(response -> response.found() ? response.source() : null);
+  }
+
+  /**
+   * Gets documents by id with the realtime {@code _mget} API.
+   *
+   * @param indexName String name of the index or alias
+   * @param ids       Collection of Elasticsearch document IDs
+   * @param klass     Class to decode sources into, a Protobuf class or Map.
+   * @param <T>       Class of the Protobuf resource.
+   * @return Map of every requested id to its source, or to null if it does not exist
+   */
+  public <T> Map<String, T> multiGet(String indexName, Collection<String> ids, Class<T> klass) {
+    return await(multiGetAsync(indexName, ids, klass), OnFailure.LOG,
+        "get documents. index: {}, ids: {}", indexName, ids);
+  }
+
+  /**
+   * Gets documents by id with the realtime {@code _mget} API without blocking.
+   *
+   * @param indexName String name of the index or alias
+   * @param ids       Collection of Elasticsearch document IDs
+   * @param klass     Class to decode sources into, a Protobuf class or Map.
+   * @param <T>       Class of the Protobuf resource.
+   * @return CompletableFuture of the sources by id, in request order
+   */
+  public <T> CompletableFuture<Map<String, T>> multiGetAsync(String indexName,
+                                                             Collection<String> ids,
+                                                             Class<T> klass) {
+    if (ids.isEmpty()) {
+      return CompletableFuture.completedFuture(Collections.emptyMap());
+    }
+
+    return GetCoalescer.multiGet(esAsyncClient, indexName, ids, klass)
+        .whenComplete((response, exception) -> {
+          if (exception != null) {
+            LOGGER.error("Exception while getting documents. index: {}, ids: {}", indexName, ids,
+                exception);
+          }
         });
+  }
 
-    UpdateResponse<Map> response = null;
+  /**
+   * Builds a {@link SearchRequest} from the {@link SearchCriteria} and executes it, serving the
+   * response from the search result cache when it is enabled and holds the same criteria.
+   *
+   * @param indexName      String name of the index or alias
+   * @param searchCriteria SearchCriteria used to build the request
+   * @param klass          Class to decode hit sources into, a Protobuf class or Map.
+   * @param <T>            Class of the Protobuf resource.
+   * @return SearchResponse Hits will be returned.
+   */
+  public <T> SearchResponse<T> search(String indexName, SearchCriteria searchCriteria,
+                                      Class<T> klass) {
+    return search(indexName, searchCriteria, klass, false);
+  }
 
-    try {
-      response = cf.get();
-    } catch (InterruptedException e) {
-      LOGGER.error("Thread was interrupted while trying to update a document. index: {}, doc: {}",
-          indexName, docMap, e);
-      Thread.currentThread().interrupt();
-    } catch (ExecutionException e) {
-      LOGGER.error("Execution exception while trying to update a document. index: {}, doc: {}",
-          indexName, docMap, e);
+  /**
+   * Builds a {@link SearchRequest} from the {@link SearchCriteria} and executes it.
+   *
+   * @param indexName      String name of the index or alias
+   * @param searchCriteria SearchCriteria used to build the request
+   * @param klass          Class to decode hit sources into, a Protobuf class or Map.
+   * @param bypassCache    true to skip the search result cache for this call
+   * @param <T>            Class of the Protobuf resource.
+   * @return SearchResponse Hits will be returned.
+   */
+  public <T> SearchResponse<T> search(String indexName, SearchCriteria searchCriteria,
+                                      Class<T> klass, boolean bypassCache) {
+    return await(searchAsync(indexName, searchCriteria, klass, bypassCache), OnFailure.LOG,
+        "search with criteria: {}", searchCriteria);
+  }
+
+  /**
+   * Builds a {@link SearchRequest} from the {@link SearchCriteria} and executes it without
+   * blocking.  Fresh responses are cached unless bypassCache is set.  Search_after pages are read
+   * from a managed point in time, opened for the first page, and are not cached.
+   *
+   * @param indexName      String name of the index or alias
+   * @param searchCriteria SearchCriteria used to build the request
+   * @param klass          Class to decode hit sources into, a Protobuf class or Map.
+   * @param bypassCache    true to skip the search result cache for this call
+   * @param <T>            Class of the Protobuf resource.
+   * @return CompletableFuture of the SearchResponse
+   */
+  public <T> CompletableFuture<SearchResponse<T>> searchAsync(String indexName,
+                                                              SearchCriteria searchCriteria,
+                                                              Class<T> klass,
+                                                              boolean bypassCache) {
+    if (pointInTimeManager != null && CursorUtils.isSearchAfter(searchCriteria.getPagination())) {
+      return searchPageAsync(indexName, searchCriteria, klass);
+    }
+
+    var searchRequest = requestBuilder.buildRequest(indexName, searchCriteria);
+
+    if (searchResultCache == null || bypassCache) {
+      return searchAsync(searchRequest, klass);
+    }
+
+    var key = SearchResultCache.key(indexName, searchCriteria, klass);
+    SearchResponse<T> cached = searchResultCache.get(key);
+
+    if (cached != null) {
+      return CompletableFuture.completedFuture(cached);
     }
 
-    return response;
+    long generation = searchResultCache.generation(key);
+
+    return searchAsync(searchRequest, klass).thenApply(response -> {
+      searchResultCache.put(key, response, generation);
+      return response;
+    });
+  }
+
+  private <T> CompletableFuture<SearchResponse<T>> searchPageAsync(String indexName,
+                                                                   SearchCriteria searchCriteria,
+                                                                   Class<T> klass) {
+    var pagination = searchCriteria.getPagination();
+    var cursorPit = CursorUtils.getPitId(pagination);
+    CompletableFuture<String> pit = cursorPit.isEmpty()
+        ? pointInTimeManager.open(indexName) : CompletableFuture.completedFuture(cursorPit);
+
+    return pit.thenCompose(pitId -> {
+      var page = searchCriteria;
+
+      if (cursorPit.isEmpty()) {
+        page = searchCriteria.toBuilder().setPagination(pagination.toBuilder()
+            .setCursor(CursorUtils.encode(pitId, List.of()))).build();
+      }
+
+      var searchRequest = requestBuilder.buildRequest(List.of(indexName), page,
+          pointInTimeManager.keepAlive(pitId));
+
+      return searchAsync(searchRequest, klass).whenComplete((response, exception) -> {
+        // Nobody holds a cursor to a point in time whose first page failed.
+        if (exception != null && cursorPit.isEmpty()) {
+          pointInTimeManager.close(pitId);
+        }
+      }).thenApply(response -> {
+        var currentPit = response.pitId() == null ? pitId : response.pitId();
+        pointInTimeManager.renew(pitId, currentPit);
+
+        if (response.hits().hits().size() < searchRequest.size()) {
+          pointInTimeManager.close(currentPit);
+        }
+
+        return response;
+      });
+    });
+  }
+
+  /**
+   * Counts the documents matching the {@link SearchCriteria} with the {@code _count} API.  No
+   * hits, sorts or sources are fetched.
+   *
+   * @param indexName      String name of the index or alias
+   * @param searchCriteria SearchCriteria used to build the query
+   * @return number of matching documents
+   * @throws org.elasticsearch.ElasticsearchException if the count fails or is interrupted
+   */
+  public long count(String indexName, SearchCriteria searchCriteria) {
+    return await(countAsync(indexName, searchCriteria), OnFailure.REQUIRED,
+        "count with criteria: {}", searchCriteria);
+  }
+
+  /**
+   * Counts the documents matching the {@link SearchCriteria} without blocking.
+   *
+   * @param indexName      String name of the index or alias
+   * @param searchCriteria SearchCriteria used to build the query
+   * @return CompletableFuture of the number of matching documents
+   */
+  public CompletableFuture<Long> countAsync(String indexName, SearchCriteria searchCriteria) {
+    var query = requestBuilder.buildQuery(searchCriteria);
+
+    return esAsyncClient.count(r -> r.index(indexName).query(query))
+        .whenComplete((response, exception) -> {
+          if (exception != null) {
+            LOGGER.error("Exception while counting with criteria: {}", searchCriteria, exception);
+          }
+        }).thenApply(CountResponse::count);
+  }
+
+  /**
+   * Checks whether any document matches the {@link SearchCriteria}.  The search fetches no hits
+   * and each shard stops at its first match, so this costs far less than a search or a count.
+   *
+   * @param indexName      String name of the index or alias
+   * @param searchCriteria SearchCriteria used to build the query
+   * @return true if at least one document matches
+   * @throws org.elasticsearch.ElasticsearchException if the search fails or is interrupted
+   */
+  public boolean exists(String indexName, SearchCriteria searchCriteria) {
+    return await(existsAsync(indexName, searchCriteria), OnFailure.REQUIRED,
+        "check existence with criteria: {}", searchCriteria);
+  }
+
+  /**
+   * Checks whether any document matches the {@link SearchCriteria} without blocking.
+   *
+   * @param indexName      String name of the index or alias
+   * @param searchCriteria SearchCriteria used to build the query
+   * @return CompletableFuture of whether at least one document matches
+   */
+  public CompletableFuture<Boolean> existsAsync(String indexName, SearchCriteria searchCriteria) {
+    var searchRequest = new SearchRequest.Builder()
+        .index(indexName)
+        .query(requestBuilder.buildQuery(searchCriteria))
+        .size(0)
+        .terminateAfter(1L)
+        .trackTotalHits(t -> t.count(1))
+        .build();
+
+    return searchAsync(searchRequest, Map.class).thenApply(response ->
+        response.hits().total() != null && response.hits().total().value() > 0);
+  }
+
+  /**
+   * Computes the aggregations of the {@link AggregationCriteria} in Elasticsearch.  No hits are
+   * fetched, only the aggregation results travel over the wire.
+   *
+   * @param indexName           String name of the index or alias
+   * @param aggregationCriteria AggregationCriteria with the query and aggregations
+   * @return AggregationResponse
+   */
+  public AggregationResponse aggregate(String indexName,
+                                       AggregationCriteria aggregationCriteria) {
+    return await(aggregateAsync(indexName, aggregationCriteria), OnFailure.LOG,
+        "aggregate with criteria: {}", aggregationCriteria);
+  }
+
+  /**
+   * Computes the aggregations of the {@link AggregationCriteria} without blocking.
+   *
+   * @param indexName           String name of the index or alias
+   * @param aggregationCriteria AggregationCriteria with the query and aggregations
+   * @return CompletableFuture of the AggregationResponse
+   */
+  public CompletableFuture<AggregationResponse> aggregateAsync(
+      String indexName, AggregationCriteria aggregationCriteria) {
+    var searchRequest = requestBuilder.buildAggregationRequest(indexName, aggregationCriteria);
+
+    return searchAsync(searchRequest, Map.class).thenApply(response ->
+        AggregationUtils.getAggregationResponse(aggregationCriteria, response));
+  }
+
+  /**
+   * Pages through the composite aggregations of the {@link AggregationCriteria}, one response per
+   * page, requesting the next page only when downstream asks for it.  The first page holds every
+   * aggregation; later pages only the composite aggregations that have more buckets.
+   *
+   * @param indexName           String name of the index or alias
+   * @param aggregationCriteria AggregationCriteria with the query and aggregations
+   * @return Flux of AggregationResponse pages
+   */
+  public Flux<AggregationResponse> aggregatePages(String indexName,
+                                                  AggregationCriteria aggregationCriteria) {
+    return Mono.fromFuture(() -> aggregateAsync(indexName, aggregationCriteria))
+        .map(response -> Map.entry(aggregationCriteria, response))
+        .expand(page -> {
+          var next = AggregationUtils.nextPage(page.getKey(), page.getValue());
+
+          return next == null ? Mono.empty()
+              : Mono.fromFuture(() -> aggregateAsync(indexName, next))
+                  .map(response -> Map.entry(next, response));
+        })
+        .map(Map.Entry::getValue);
   }
 
   /**
    * Executes {@link SearchRequest} and returns {@link SearchResponse}.  The SearchResponse contains
-   * the Hits.  Hits are documents returned by the search.
+   * the Hits.  Hits are documents returned by the search.  When klass is a generated Protobuf
+   * class each hit's source is decoded straight into that message while the response is parsed.
    *
    * @param searchRequest SearchRequest The prepared SearchRequest.
+   * @param klass         Class to decode hit sources into, a Protobuf class or Map.
    * @param <T>           Class of the Protobuf resource.
    * @return SearchResponse Hits will be returned.
    */
   public <T> SearchResponse<T> search(SearchRequest searchRequest, Class<T> klass) {
-    var cf = esAsyncClient.search(searchRequest, klass)
+    return await(searchAsync(searchRequest, klass), OnFailure.LOG,
+        "search with request: {}", searchRequest);
+  }
+
+  /**
+   * Executes {@link SearchRequest} without blocking.
+   *
+   * @param searchRequest SearchRequest The prepared SearchRequest.
+   * @param klass         Class to decode hit sources into, a Protobuf class or Map.
+   * @param <T>           Class of the Protobuf resource.
+   * @return CompletableFuture of the SearchResponse
+   * @see #search(SearchRequest, Class)
+   */
+  public <T> CompletableFuture<SearchResponse<T>> searchAsync(SearchRequest searchRequest,
+                                                              Class<T> klass) {
+    CompletableFuture<SearchResponse<T>> search;
+
+    if (binaryTransport != null) {
+      search = binaryTransport.search(searchRequest, klass);
+    } else if (searchCoalescer != null && SearchCoalescer.canCoalesce(searchRequest)) {
+      search = searchCoalescer.search(searchRequest, klass);
+    } else {
+      search = esAsyncClient.search(searchRequest, klass);
+    }
+
+    return search
         .whenComplete((response, exception) -> {
           if (exception != null) {
             LOGGER.error("Exception while searching with request: {}", searchRequest, exception);
@@ -260,20 +934,169 @@ public class ElasticsearchService {
             LOGGER.info("Search completed with request: {}", searchRequest);
           }
         });
+  }
 
-    SearchResponse<T> response = null;
+  /**
+   * Streams every document matching the {@link SearchCriteria} from the index.  A point in time is
+   * opened when the Flux is subscribed to and pages are fetched with search_after, one page at a
+   * time as downstream demand requires, so memory use does not grow with the number of hits.  The
+   * point in time is closed when the Flux completes, errors or is cancelled.  When points in time
+   * are managed it is opened through the same manager as search_after pages, so it counts towards
+   * max-open and is closed if the subscriber stops requesting for the idle timeout.
+   *
+   * <p>Pages are the criteria's pagination size, or {@value #DEFAULT_STREAM_PAGE_SIZE} when it is
+   * not set.  The criteria's sorts are kept and a {@code _shard_doc} tiebreaker is appended so
+   * every page picks up exactly where the last one ended.
+   *
+   * @param indexName      String name of the index or alias
+   * @param searchCriteria SearchCriteria used to build the query and sorts
+   * @param klass          Class to decode hit sources into, a Protobuf class or Map.
+   * @param <T>            Class of the Protobuf resource.
+   * @return Flux of hit sources in sort order
+   */
+  public <T> Flux<T> searchStream(String indexName, SearchCriteria searchCriteria,
+                                  Class<T> klass) {
+    int requested = searchCriteria.getPagination().getSize();
+    int pageSize = requested > 0 ? requested : DEFAULT_STREAM_PAGE_SIZE;
+
+    return Flux.usingWhen(
+        Mono.fromFuture(() -> openStreamPointInTime(indexName)).map(AtomicReference::new),
+        pit -> Mono.fromFuture(() -> searchAsync(
+                streamRequest(searchCriteria, pit.get(), pageSize, b -> { }), klass))
+            .expand(response -> {
+              List<Hit<T>> hits = response.hits().hits();
+
+              if (response.pitId() != null) {
+                renewStreamPointInTime(pit.getAndSet(response.pitId()), response.pitId());
+              }
 
-    try {
-      response = cf.get();
-    } catch (InterruptedException e) {
-      LOGGER.error("Thread was interrupted while trying to search with request: {}", searchRequest,
-          e);
-      Thread.currentThread().interrupt();
-    } catch (ExecutionException e) {
-      LOGGER.error("Execution exception while trying to search with request: {}", searchRequest, e);
+              if (hits.size() < pageSize) {
+                return Mono.empty();
+              }
+
+              var last = hits.get(hits.size() - 1);
+              var next = streamRequest(searchCriteria, pit.get(), pageSize,
+                  b -> b.searchAfter(last.sort()));
+
+              return Mono.fromFuture(() -> searchAsync(next, klass));
+            })
+            .concatMapIterable(response -> response.hits().hits(), 1)
+            .mapNotNull(Hit::source),
+        pit -> closeStreamPointInTime(pit.get()),
+        (pit, exception) -> closeStreamPointInTime(pit.get()),
+        pit -> closeStreamPointInTime(pit.get()));
+  }
+
+  /**
+   * Exports every document of the resource's alias matching the filter as a Stream.  A point in
+   * time is opened on the alias and read as the given number of slices in parallel, on at most one
+   * thread per core, so throughput grows with cores and shards instead of being limited to one
+   * scroll.  Hits are handed over through a bounded queue: the slices wait while the consumer is
+   * busy, so memory use stays constant however large the index is.
+   *
+   * <p>Hits arrive in no particular order; the filter's sorts are ignored and its include and
+   * exclude fields apply.  Pages are the filter's pagination size, or
+   * {@value #DEFAULT_STREAM_PAGE_SIZE} when it is not set.  Close the Stream, for example with
+   * try-with-resources, to stop early; the point in time is also closed once every hit has been
+   * read.  Like {@link #searchStream}, the point in time is managed when points in time are.
+   *
+   * <pre>{@code
+   * try (Stream<RiskScore> scores = service.exportAll(RiskScore.class, filter, 4)) {
+   *   scores.forEach(writer::write);
+   * }
+   * }</pre>
+   *
+   * @param resource Class of the Protobuf resource, which names the alias
+   * @param filter   SearchCriteria used to build the query
+   * @param slices   number of slices read in parallel, at most the number of shards is useful
+   * @param <T>      Class of the Protobuf resource.
+   * @return Stream of every matching document
+   */
+  public <T extends GeneratedMessageV3> Stream<T> exportAll(Class<T> resource,
+                                                           SearchCriteria filter, int slices) {
+    var alias = IndexUtils.getAlias(resource);
+    int requested = filter.getPagination().getSize();
+    int pageSize = requested > 0 ? requested : DEFAULT_STREAM_PAGE_SIZE;
+    String pitId = await(openStreamPointInTime(alias), OnFailure.REQUIRED,
+        "open a point in time to export: {}", alias);
+
+    var export = new SlicedExport<T>(requestBuilder.buildQuery(filter),
+        requestBuilder.sourceConfig(filter), pitId, slices, pageSize,
+        request -> searchAsync(request, resource), this::streamKeepAlive,
+        this::renewStreamPointInTime, pit -> closeStreamPointInTime(pit).subscribe())
+        .start();
+
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(export,
+        Spliterator.NONNULL), false).onClose(export::close);
+  }
+
+  private SearchRequest streamRequest(SearchCriteria searchCriteria, String pitId, int pageSize,
+                                      Consumer<SearchRequest.Builder> searchAfter) {
+    SearchRequest.Builder builder = new SearchRequest.Builder()
+        .query(requestBuilder.buildQuery(searchCriteria))
+        .size(pageSize)
+        .pit(p -> p.id(pitId).keepAlive(t -> t.time(streamKeepAlive(pitId))));
+
+    if (!searchCriteria.getSortingCriteriaList().isEmpty()) {
+      requestBuilder.addSorts(searchCriteria, builder);
+    }
+
+    var source = requestBuilder.sourceConfig(searchCriteria);
+
+    if (source != null) {
+      builder.source(source);
+    }
+
+    builder.sort(s -> s.field(f -> f.field("_shard_doc").order(SortOrder.Asc)));
+    searchAfter.accept(builder);
+
+    return builder.build();
+  }
+
+  /**
+   * Opens the point in time of a stream or an export through the {@link PointInTimeManager}, so it
+   * counts towards max-open and is closed by the idle sweep, or directly when points in time are
+   * not managed.
+   */
+  private CompletableFuture<String> openStreamPointInTime(String indexName) {
+    return pointInTimeManager != null
+        ? pointInTimeManager.open(indexName) : openPointInTimeAsync(indexName);
+  }
+
+  private String streamKeepAlive(String pitId) {
+    return pointInTimeManager != null ? pointInTimeManager.keepAlive(pitId) : STREAM_KEEP_ALIVE;
+  }
+
+  private void renewStreamPointInTime(String pitId, String newPitId) {
+    if (pointInTimeManager != null && pitId != null) {
+      pointInTimeManager.renew(pitId, newPitId);
     }
+  }
+
+  private Mono<Void> closeStreamPointInTime(String pitId) {
+    if (pointInTimeManager != null) {
+      return Mono.fromRunnable(() -> pointInTimeManager.close(pitId));
+    }
+
+    return closePointInTime(pitId);
+  }
+
+  private CompletableFuture<String> openPointInTimeAsync(String indexName) {
+    return esAsyncClient.openPointInTime(r -> r.index(indexName)
+            .keepAlive(t -> t.time(STREAM_KEEP_ALIVE)))
+        .whenComplete((response, exception) -> {
+          if (exception != null) {
+            LOGGER.error("Exception while opening a point in time. index: {}", indexName,
+                exception);
+          }
+        }).thenApply(OpenPointInTimeResponse::id);
+  }
 
-    return response;
+  private Mono<Void> closePointInTime(String pitId) {
+    return Mono.fromFuture(() -> esAsyncClient.closePointInTime(r -> r.id(pitId)))
+        .doOnError(exception -> LOGGER.warn("Exception while closing a point in time", exception))
+        .onErrorResume(exception -> Mono.empty())
+        .then();
   }
 
   /**
@@ -285,27 +1108,23 @@ public class ElasticsearchService {
    * @return Refresh Response
    */
   public RefreshResponse refresh(RefreshRequest request) {
-    var cf = esAsyncClient.indices().refresh(request).whenComplete((resp, exception) -> {
+    return await(refreshAsync(request), OnFailure.LOG, "refresh the index: {}", request);
+  }
+
+  /**
+   * Forces the index to refresh without blocking.
+   *
+   * @param request RefreshRequest
+   * @return CompletableFuture of the RefreshResponse
+   */
+  public CompletableFuture<RefreshResponse> refreshAsync(RefreshRequest request) {
+    return esAsyncClient.indices().refresh(request).whenComplete((resp, exception) -> {
       if (exception != null) {
         LOGGER.error("Exception while trying to refresh the index: {}", request, exception);
       } else {
         LOGGER.info("Index refreshed: {}", request);
       }
-    });
-
-    RefreshResponse response = null;
-
-    try {
-      response = cf.get();
-    } catch (InterruptedException e) {
-      LOGGER.error("Thread was interrupted while trying to refresh the index: {}", request,
-          e);
-      Thread.currentThread().interrupt();
-    } catch (ExecutionException e) {
-      LOGGER.error("Execution exception while trying to refresh the index: {}", request, e);
-    }
-
-    return response;
+    }).whenComplete((resp, exception) -> invalidateSearchCache(request.index()));
   }
 
   /**
@@ -319,21 +1138,27 @@ public class ElasticsearchService {
    *       <li>mappings = Map</li>
    *     </ul>
    *   </li>
-   *   <li>Check if index exists by alias.  If not creates the index with the provided mappings and
-   *   creates the alias.</li>
-   *   <li>If the index exists, Mappings are checked between the new and the existing.  If there is
-   *   a mismatch {@link ElasticsearchService#updateMappings(Class)}
-   *   is called to try and update mappings.</li>
-   *   <li>If {@link ElasticsearchService#updateMappings(Class)} is
-   *   unsuccessful, or a post update call to
-   *   {@link ElasticsearchService#isMatchMappings(Class)} returns
-   *   FALSE {@link ElasticsearchService#reindex(Class)} is called to
-   *   reindex from old to new index.  If that succeeds the Alias is swapped by calling
-   *   {@link ElasticsearchService#swapAlias(Class)} and Mappings are
-   *   checked once again with
-   *   {@link ElasticsearchService#isMatchMappings(Class)}</li>
-   *   <li>If all of this fails we log the error that Mappings failed to update for the given
-   *   index, and we throw a RuntimeException causing the application to terminate.</li>
+   *   <li>Fetch the indices and mappings behind every alias in a single request.</li>
+   *   <li>Compare existing mappings to the resource mappings, in parallel.  Resources whose
+   *   mappings match need nothing else.</li>
+   *   <li>The remaining resources are migrated concurrently, at most
+   *   {@code elasticsearch.bootstrap.parallelism} at a time:
+   *     <ul>
+   *       <li>If no index exists for the alias the index is created with the provided mappings and
+   *       the alias is added.</li>
+   *       <li>Otherwise {@link ElasticsearchService#updateMappings(Class)} is called to try and
+   *       update mappings.</li>
+   *       <li>If {@link ElasticsearchService#updateMappings(Class)} is unsuccessful, or a post
+   *       update call to {@link ElasticsearchService#isMatchMappings(Class)} returns FALSE
+   *       {@link ElasticsearchService#reindex(Class)} is called to reindex from old to new index.
+   *       If that succeeds the Alias is swapped by calling
+   *       {@link ElasticsearchService#swapAlias(Class)} and Mappings are checked once again with
+   *       {@link ElasticsearchService#isMatchMappings(Class)}</li>
+   *     </ul>
+   *   </li>
+   *   <li>If all of this fails for any resource we log the error that Mappings failed to update for
+   *   the given index, stop the remaining migrations and throw a RuntimeException causing the
+   *   application to terminate.</li>
    * </ol>
    *
    * @param resources List of Protobuf Classes used to check and create indices
@@ -341,29 +1166,142 @@ public class ElasticsearchService {
   @SafeVarargs
   public final void bootstrapService(Class<? extends GeneratedMessageV3>... resources)
       throws ElasticsearchException {
-    for (Class<? extends GeneratedMessageV3> resource : resources) {
-      var indexName = IndexUtils.getIndexName(resource);
-      var alias = IndexUtils.getAlias(resource);
-      var mappings = IndexUtils.getTypeMapping(resource);
+    List<String> aliases = Arrays.stream(resources).map(IndexUtils::getAlias).toList();
+    Map<String, IndexState> indices = existingIndices(aliases);
 
-      if (Boolean.FALSE.equals(indexExists(alias))) {
-        createIndex(indexName, mappings);
-        LOGGER.info("Index created for {}", indexName);
-        LOGGER.info("Mappings for index {} set as: {}", indexName, mappings);
-        updateAliases(indexName, alias, Action.Kind.Add);
-      } else if (Boolean.TRUE.equals(isMatchMappings(resource))) {
-        LOGGER.info("Index exists for {}, and mappings match.", indexName);
-      } else if (Boolean.TRUE.equals(updateMappings(resource))
-          && Boolean.TRUE.equals(isMatchMappings(resource))) {
-        LOGGER.info("Mappings were successfully updated for {}", indexName);
-      } else if (Boolean.TRUE.equals(reindex(resource)) && Boolean.TRUE.equals(swapAlias(resource))
-          && Boolean.TRUE.equals(isMatchMappings(resource))) {
-        LOGGER.info("Index reindexed and Mappings match for {}", indexName);
-      } else {
-        LOGGER.error("Mappings failed to update for {}", indexName);
-        throw ExceptionsHelper.convertToElastic(
-            new RuntimeException("We need to know immediately if mappings updates fail."));
+    List<Class<? extends GeneratedMessageV3>> pending = Arrays.stream(resources).parallel()
+        .filter(resource -> !isBootstrapped(resource, indexStateForAlias(resource, indices)))
+        .toList();
+
+    if (pending.isEmpty()) {
+      return;
+    }
+
+    ExecutorService executor =
+        Executors.newFixedThreadPool(Math.min(bootstrapParallelism, pending.size()));
+    CompletionService<Void> migrations = new ExecutorCompletionService<>(executor);
+
+    try {
+      for (Class<? extends GeneratedMessageV3> resource : pending) {
+        migrations.submit(() -> {
+          migrate(resource, indexStateForAlias(resource, indices));
+          return null;
+        });
+      }
+
+      for (int i = 0; i < pending.size(); i++) {
+        migrations.take().get();
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw ExceptionsHelper.convertToElastic(e);
+    } catch (ExecutionException e) {
+      throw ExceptionsHelper.convertToElastic(
+          e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Sets how many resources {@link #bootstrapService} migrates at once.
+   *
+   * @param parallelism maximum concurrent migrations
+   */
+  @Inject
+  public void setBootstrapParallelism(
+      @Value("${elasticsearch.bootstrap.parallelism:4}") int parallelism) {
+    this.bootstrapParallelism = Math.max(parallelism, 1);
+  }
+
+  /**
+   * Fetches every index behind the given aliases, with their aliases and mappings, in one
+   * request.  Aliases without an index are left out of the result.
+   */
+  private Map<String, IndexState> existingIndices(List<String> aliases) {
+    var cf = esAsyncClient.indices().get(r -> r.index(aliases).ignoreUnavailable(true)
+            .allowNoIndices(true))
+        .whenComplete((resp, exception) -> {
+          if (exception != null) {
+            LOGGER.error("Exception while trying to get indices for aliases: {}", aliases,
+                exception);
+          } else {
+            LOGGER.info("Indices found for aliases {}: {}", aliases, resp.result().keySet());
+          }
+        });
+
+    return await(cf, OnFailure.REQUIRED, "get indices for aliases: {}", aliases).result();
+  }
+
+  /**
+   * Picks the index of the resource among the indices found for its alias.  Mid-reindex the alias
+   * spans the old and the new index, so the resource's current index comes first, then an index
+   * named like the alias, then the alias's write index, and failing that the last index by name.
+   */
+  private static IndexState indexStateForAlias(Class<? extends GeneratedMessageV3> resource,
+                                               Map<String, IndexState> indices) {
+    var alias = IndexUtils.getAlias(resource);
+    var state = indices.get(IndexUtils.getIndexName(resource));
+
+    if (state == null) {
+      state = indices.get(alias);
+    }
+
+    if (state != null) {
+      return state;
+    }
+
+    List<String> members = indices.entrySet().stream()
+        .filter(entry -> entry.getValue().aliases().containsKey(alias))
+        .map(Map.Entry::getKey)
+        .sorted()
+        .toList();
+
+    return members.stream()
+        .filter(name -> Boolean.TRUE.equals(
+            indices.get(name).aliases().get(alias).isWriteIndex()))
+        .findFirst()
+        .or(() -> members.stream().reduce((first, second) -> second))
+        .map(indices::get)
+        .orElse(null);
+  }
+
+  private boolean isBootstrapped(Class<? extends GeneratedMessageV3> resource, IndexState state) {
+    if (state == null || state.mappings() == null) {
+      return false;
+    }
+
+    var indexName = IndexUtils.getIndexName(resource);
+
+    if (Boolean.TRUE.equals(MappingsComparator.compareMappings(state.mappings().properties(),
+        IndexUtils.getTypeMapping(resource).properties(), "", true))) {
+      LOGGER.info("Index exists for {}, and mappings match.", indexName);
+      return true;
+    }
+
+    return false;
+  }
+
+  private void migrate(Class<? extends GeneratedMessageV3> resource, IndexState state) {
+    var indexName = IndexUtils.getIndexName(resource);
+    var alias = IndexUtils.getAlias(resource);
+
+    if (state == null) {
+      var mappings = IndexUtils.getTypeMapping(resource);
+      createIndex(indexName, mappings);
+      LOGGER.info("Index created for {}", indexName);
+      LOGGER.info("Mappings for index {} set as: {}", indexName, mappings);
+      updateAliases(indexName, alias, Action.Kind.Add);
+    } else if (Boolean.TRUE.equals(updateMappings(resource))
+        && Boolean.TRUE.equals(isMatchMappings(resource))) {
+      LOGGER.info("Mappings were successfully updated for {}", indexName);
+    } else if (reindex(resource) != null && Boolean.TRUE.equals(swapAlias(resource))
+        && Boolean.TRUE.equals(isMatchMappings(resource))) {
+      LOGGER.info("Index reindexed and Mappings match for {}", indexName);
+    } else {
+      LOGGER.error("Mappings failed to update for {}", indexName);
+      throw ExceptionsHelper.convertToElastic(
+          new RuntimeException("We need to know immediately if mappings updates fail."));
     }
   }
 
@@ -392,62 +1330,53 @@ public class ElasticsearchService {
    * @return CloneIndexResponse
    */
   public CloneIndexResponse cloneIndex(String targetIndexName, String sourceIndexName) {
-    var cf = esAsyncClient.indices().clone(r -> r.index(sourceIndexName).target(targetIndexName)
-            .timeout(t -> t.time("10m")))
-        .whenComplete((resp, exception) -> {
-          if (exception != null) {
-            LOGGER.error("Exception while trying to clone an Index. sourceIndex: {}, "
-                + "targetIndex: {}", sourceIndexName, targetIndexName, exception);
-          } else {
-            LOGGER.info("Index cloned. sourceIndex: {}, targetIndex: {}", sourceIndexName,
-                targetIndexName);
-          }
-        });
-
-    CloneIndexResponse response = null;
+    return await(cloneIndexAsync(targetIndexName, sourceIndexName), OnFailure.ELASTIC,
+        "clone an Index. sourceIndex: {}, targetIndex: {}", sourceIndexName, targetIndexName);
+  }
 
-    if (Boolean.TRUE.equals(freezeIndex(sourceIndexName).acknowledged())) {
-      try {
-        response = cf.get();
-      } catch (InterruptedException e) {
-        LOGGER.error("Thread was interrupted while trying to clone an Index. sourceIndex: {}, "
-            + "targetIndex: {}", sourceIndexName, targetIndexName, e);
-        Thread.currentThread().interrupt();
-      } catch (ExecutionException e) {
-        throw ExceptionsHelper.convertToElastic(e);
+  /**
+   * Freezes the source index and then clones it to a new index without blocking.  Elasticsearch
+   * only clones an index that blocks writes, so the clone is requested once the freeze has been
+   * acknowledged rather than alongside it.  The future completes with null when the source index
+   * could not be frozen.
+   *
+   * @param targetIndexName String indexName to clone old into
+   * @param sourceIndexName String indexName to clone from
+   * @return CompletableFuture of the CloneIndexResponse
+   */
+  public CompletableFuture<CloneIndexResponse> cloneIndexAsync(String targetIndexName,
+                                                               String sourceIndexName) {
+    return freezeIndexAsync(sourceIndexName).thenCompose(frozen -> {
+      if (!frozen.acknowledged()) {
+        LOGGER.error("Failed to freeze the index to clone. indexName: {}", sourceIndexName);
+        return CompletableFuture.<CloneIndexResponse>completedFuture(null);
       }
-    } else {
-      LOGGER.error("Failed to freeze the index to clone. indexName: {}", sourceIndexName);
-    }
 
-    return response;
+      return esAsyncClient.indices().clone(r -> r.index(sourceIndexName).target(targetIndexName)
+              .timeout(t -> t.time("10m")))
+          .whenComplete((resp, exception) -> {
+            if (exception != null) {
+              LOGGER.error("Exception while trying to clone an Index. sourceIndex: {}, "
+                  + "targetIndex: {}", sourceIndexName, targetIndexName, exception);
+            } else {
+              LOGGER.info("Index cloned. sourceIndex: {}, targetIndex: {}", sourceIndexName,
+                  targetIndexName);
+            }
+          });
+    });
   }
 
-  private FreezeResponse freezeIndex(String sourceIndexName) {
-    var cf =
-        esAsyncClient.indices().freeze(r -> r.index(sourceIndexName).timeout(t -> t.time("2m")))
-            .whenComplete((resp, exception) -> {
-              if (exception != null) {
-                LOGGER.error("Exception while trying to freeze an Index. index: {}",
-                    sourceIndexName, exception);
-              } else {
-                LOGGER.info("Index frozen. index: {}", sourceIndexName);
-              }
-            });
-
-    FreezeResponse response = null;
-
-    try {
-      response = cf.get();
-    } catch (InterruptedException e) {
-      LOGGER.error("Thread was interrupted while trying to freeze Index. index: {}",
-          sourceIndexName, e);
-      Thread.currentThread().interrupt();
-    } catch (ExecutionException e) {
-      throw ExceptionsHelper.convertToElastic(e);
-    }
-
-    return response;
+  private CompletableFuture<FreezeResponse> freezeIndexAsync(String sourceIndexName) {
+    return esAsyncClient.indices()
+        .freeze(r -> r.index(sourceIndexName).timeout(t -> t.time("2m")))
+        .whenComplete((resp, exception) -> {
+          if (exception != null) {
+            LOGGER.error("Exception while trying to freeze an Index. index: {}",
+                sourceIndexName, exception);
+          } else {
+            LOGGER.info("Index frozen. index: {}", sourceIndexName);
+          }
+        });
   }
 
   private UnfreezeResponse unFreezeIndex(String indexName) {
@@ -462,19 +1391,7 @@ public class ElasticsearchService {
           }
         });
 
-    UnfreezeResponse response = null;
-
-    try {
-      response = cf.get();
-    } catch (InterruptedException e) {
-      LOGGER.error("Thread was interrupted while trying to unFreeze Index. index: {}",
-          indexName, e);
-      Thread.currentThread().interrupt();
-    } catch (ExecutionException e) {
-      throw ExceptionsHelper.convertToElastic(e);
-    }
-
-    return response;
+    return await(cf, OnFailure.ELASTIC, "unFreeze Index. index: {}", indexName);
   }
 
   /**
@@ -515,21 +1432,10 @@ public class ElasticsearchService {
           } else {
             LOGGER.info("Reindex completed successfully for {}", newIndexName);
           }
-        });
-
-    ReindexResponse response = null;
-
-    try {
-      response = cf.get();
-    } catch (InterruptedException e) {
-      LOGGER.error("Thread was interrupted while trying to reindex. newIndexName: {}, "
-          + "sourceAlias: {}", newIndexName, sourceAlias, e);
-      Thread.currentThread().interrupt();
-    } catch (ExecutionException e) {
-      throw ExceptionsHelper.convertToElastic(e);
-    }
+        }).whenComplete((resp, exception) -> invalidateSearchCache(List.of(newIndexName)));
 
-    return response;
+    return await(cf, OnFailure.ELASTIC, "reindex. newIndexName: {}, sourceAlias: {}",
+        newIndexName, sourceAlias);
   }
 
   private void prepareReindex(String newIndexName, String sourceAlias) {
@@ -582,10 +1488,22 @@ public class ElasticsearchService {
    * @return Boolean result
    */
   public Boolean updateMappings(Class<? extends GeneratedMessageV3> resource) {
+    return Boolean.TRUE.equals(await(updateMappingsAsync(resource), OnFailure.LOG,
+        "update mappings. resource: {}", resource.getSimpleName()));
+  }
+
+  /**
+   * Updates Elasticsearch mappings for the given resource without blocking.
+   *
+   * @param resource Protobuf Message
+   * @return CompletableFuture of whether the update was acknowledged
+   */
+  public CompletableFuture<Boolean> updateMappingsAsync(
+      Class<? extends GeneratedMessageV3> resource) {
     var alias = IndexUtils.getAlias(resource);
     var mappings = IndexUtils.getTypeMapping(resource);
 
-    var cf = esAsyncClient.indices().putMapping(pm -> pm.index(alias)
+    return esAsyncClient.indices().putMapping(pm -> pm.index(alias)
             .properties(mappings.properties()))
         .whenComplete((resp, exception) -> {
           if (exception != null) {
@@ -594,21 +1512,7 @@ public class ElasticsearchService {
           } else {
             LOGGER.info("Mappings updated successfully for {}", alias);
           }
-        });
-
-    PutMappingResponse response = null;
-
-    try {
-      response = cf.get();
-    } catch (InterruptedException e) {
-      LOGGER.error("Thread was interrupted while trying to update mappings. alias: {}, "
-          + "mappings: {}", alias, mappings, e);
-      Thread.currentThread().interrupt();
-    } catch (ExecutionException e) {
-      LOGGER.error("Mappings failed to update.", e);
-    }
-
-    return response != null && response.acknowledged();
+        }).thenApply(PutMappingResponse::acknowledged);
   }
 
   /**
@@ -619,8 +1523,22 @@ public class ElasticsearchService {
    * @return HashMap of existing mappings from the given index
    */
   public TypeMapping existingMappings(Class<? extends GeneratedMessageV3> resource) {
+    return await(existingMappingsAsync(resource), OnFailure.ELASTIC,
+        "get existing mappings. resource: {}", resource.getSimpleName());
+  }
+
+  /**
+   * Returns the Elasticsearch Mappings in the current index for the given resource without
+   * blocking.
+   *
+   * @param resource Protobuf message resource used in the platform
+   * @return CompletableFuture of the existing mappings
+   */
+  public CompletableFuture<TypeMapping> existingMappingsAsync(
+      Class<? extends GeneratedMessageV3> resource) {
     var alias = IndexUtils.getAlias(resource);
-    var cf = esAsyncClient.indices().getMapping(r -> r.index(alias))
+
+    return esAsyncClient.indices().getMapping(r -> r.index(alias))
         .whenComplete((resp, exception) -> {
           if (exception != null) {
             LOGGER.error("Exception while trying to get existing mappings. alias: {}",
@@ -628,27 +1546,10 @@ public class ElasticsearchService {
           } else {
             LOGGER.info("Existing mappings retrieved successfully for {}", alias);
           }
+        }).thenApply(resp -> {
+          var indexName = resp.result().keySet().iterator().next();
+          return resp.get(indexName).mappings();
         });
-
-    GetMappingResponse getMappingsResponse = null;
-
-    try {
-      getMappingsResponse = cf.get();
-    } catch (InterruptedException e) {
-      LOGGER.error("Thread was interrupted while trying to get existing mappings. alias: {}",
-          alias, e);
-      Thread.currentThread().interrupt();
-    } catch (ExecutionException e) {
-      throw ExceptionsHelper.convertToElastic(e);
-    }
-
-    TypeMapping response = null;
-    if (getMappingsResponse != null) {
-      var indexName = getMappingsResponse.result().keySet().iterator().next();
-      response = getMappingsResponse.get(indexName).mappings();
-    }
-
-    return response;
   }
 
   private Boolean isMatchMappings(Class<? extends GeneratedMessageV3> resource) {
@@ -682,24 +1583,8 @@ public class ElasticsearchService {
    * @return ClusterHealthResponse
    */
   public HealthResponse clusterHealth() {
-    var cf = esAsyncClient.cluster().health().whenComplete((response, exception) -> {
-      if (exception != null) {
-        LOGGER.error("Exception while trying to get the cluster health", exception);
-      } else {
-        LOGGER.info("Cluster health: {}", response);
-      }
-    });
-
-    HealthResponse clusterHealthResponse = null;
-
-    try {
-      clusterHealthResponse = cf.get();
-    } catch (InterruptedException e) {
-      LOGGER.error("Thread was interrupted while trying to get the cluster health.", e);
-      Thread.currentThread().interrupt();
-    } catch (ExecutionException e) {
-      throw ExceptionsHelper.convertToElastic(e);
-    }
+    HealthResponse clusterHealthResponse = await(clusterHealthAsync(), OnFailure.ELASTIC,
+        "get the cluster health.");
 
     if (clusterHealthResponse == null) {
       LOGGER.info("Something is wrong, no response was received from the Elasticsearch Cluster");
@@ -708,6 +1593,22 @@ public class ElasticsearchService {
     return clusterHealthResponse;
   }
 
+  /**
+   * Returns the {@link HealthResponse} for the current cluster without blocking.
+   *
+   * @return CompletableFuture of the HealthResponse
+   * @see #clusterHealth()
+   */
+  public CompletableFuture<HealthResponse> clusterHealthAsync() {
+    return esAsyncClient.cluster().health().whenComplete((response, exception) -> {
+      if (exception != null) {
+        LOGGER.error("Exception while trying to get the cluster health", exception);
+      } else {
+        LOGGER.info("Cluster health: {}", response);
+      }
+    });
+  }
+
   /**
    * Update an Alias for Elasticsearch Indices.  Aliases are used to point to an Index or set of
    * Indices.
@@ -721,6 +1622,27 @@ public class ElasticsearchService {
    */
   public UpdateAliasesResponse updateAliases(List<String> indexNames, String aliasName,
                                              Action.Kind actionKind) {
+    return await(updateAliasesAsync(indexNames, aliasName, actionKind), OnFailure.ELASTIC,
+        "update aliases. indexNames: {}, alias: {}, actionKind: {}", indexNames, aliasName,
+        actionKind);
+  }
+
+  public UpdateAliasesResponse updateAliases(String indexName, String aliasName,
+                                             Action.Kind actionKind) {
+    return updateAliases(Collections.singletonList(indexName), aliasName, actionKind);
+  }
+
+  /**
+   * Updates an Alias for Elasticsearch Indices without blocking.
+   *
+   * @param indexNames String[] array of String Index Names
+   * @param aliasName  String alias name
+   * @param actionKind Action.Kind
+   * @return CompletableFuture of the UpdateAliasesResponse
+   */
+  public CompletableFuture<UpdateAliasesResponse> updateAliasesAsync(List<String> indexNames,
+                                                                     String aliasName,
+                                                                     Action.Kind actionKind) {
     Action.Builder actionBuilder = new Action.Builder();
 
     switch (actionKind) {
@@ -737,33 +1659,14 @@ public class ElasticsearchService {
         throw new IllegalArgumentException("Invalid actionKind: " + actionKind);
     }
 
-    var cf = esAsyncClient.indices().updateAliases(r -> r.actions(actionBuilder.build()))
+    return esAsyncClient.indices().updateAliases(r -> r.actions(actionBuilder.build()))
         .whenComplete((response, exception) -> {
           if (exception != null) {
             LOGGER.error("Exception while trying to update aliases", exception);
           } else {
             LOGGER.info("Aliases updated: {}", response);
           }
-        });
-
-    UpdateAliasesResponse response = null;
-
-    try {
-      response = cf.get();
-    } catch (InterruptedException e) {
-      LOGGER.error("Thread was interrupted while trying to update aliases. indexNames: {}, "
-          + "alias: {}, actionKind: {}", indexNames, aliasName, actionKind, e);
-      Thread.currentThread().interrupt();
-    } catch (ExecutionException e) {
-      throw ExceptionsHelper.convertToElastic(e);
-    }
-
-    return response;
-  }
-
-  public UpdateAliasesResponse updateAliases(String indexName, String aliasName,
-                                             Action.Kind actionKind) {
-    return updateAliases(Collections.singletonList(indexName), aliasName, actionKind);
+        }).whenComplete((resp, exception) -> invalidateSearchCache(List.of()));
   }
 
   /**
@@ -773,7 +1676,18 @@ public class ElasticsearchService {
    * @return Boolean if alias exists or not
    */
   public BooleanResponse aliasExists(String aliasName) {
-    var cf = esAsyncClient.indices().existsAlias(r -> r.name(aliasName))
+    return await(aliasExistsAsync(aliasName), OnFailure.ELASTIC, "verify Alias. alias: {}",
+        aliasName);
+  }
+
+  /**
+   * Checks if an alias exists without blocking.
+   *
+   * @param aliasName String alias name to check exists
+   * @return CompletableFuture of the BooleanResponse
+   */
+  public CompletableFuture<BooleanResponse> aliasExistsAsync(String aliasName) {
+    return esAsyncClient.indices().existsAlias(r -> r.name(aliasName))
         .whenComplete((response, exception) -> {
           if (exception != null) {
             LOGGER.error("Exception while trying to verify Alias", exception);
@@ -781,19 +1695,6 @@ public class ElasticsearchService {
             LOGGER.info("Alias exists: {}", response);
           }
         });
-
-    BooleanResponse exists = null;
-
-    try {
-      exists = cf.get();
-    } catch (InterruptedException e) {
-      LOGGER.error("Thread was interrupted while trying to verify Alias. alias: {}", aliasName, e);
-      Thread.currentThread().interrupt();
-    } catch (ExecutionException e) {
-      throw ExceptionsHelper.convertToElastic(e);
-    }
-
-    return exists;
   }
 
   /**
@@ -804,32 +1705,81 @@ public class ElasticsearchService {
    * @return String[] array of index names associated with the alias
    */
   public List<String> indexNamesFromAlias(String alias) {
-    var cf = esAsyncClient.indices().getAlias(r -> r.name(alias))
+    List<String> indexNameList = await(indexNamesFromAliasAsync(alias), OnFailure.ELASTIC,
+        "get index names from an alias. alias: {}", alias);
+
+    return indexNameList == null ? new ArrayList<>() : indexNameList;
+  }
+
+  /**
+   * Gets index names by alias without blocking.
+   *
+   * @param alias String alias name
+   * @return CompletableFuture of the index names associated with the alias
+   */
+  public CompletableFuture<List<String>> indexNamesFromAliasAsync(String alias) {
+    return esAsyncClient.indices().getAlias(r -> r.name(alias))
         .whenComplete((response, exception) -> {
           if (exception != null) {
             LOGGER.error("Exception while trying to get index names from an alias", exception);
           } else {
             LOGGER.info("Index names from alias: {}", response);
           }
-        });
+        }).thenApply(response -> response.result().keySet().stream().toList());
+  }
 
-    GetAliasResponse response = null;
+  /**
+   * How a blocking method handles a failed future.  Each keeps the behaviour the method had
+   * before it was backed by its async variant: LOG logs and returns null, RUNTIME wraps the
+   * failure in a RuntimeException and ELASTIC converts it to an ElasticsearchException.  REQUIRED
+   * is ELASTIC for methods that cannot return null, an interrupt is converted too.
+   */
+  private enum OnFailure {
+    LOG,
+    RUNTIME,
+    ELASTIC,
+    REQUIRED
+  }
 
+  /**
+   * Blocks on the future for the blocking API.  The action and args describe the call for log
+   * messages, for example "refresh the index: {}".
+   */
+  private static <T> T await(CompletableFuture<T> cf, OnFailure onFailure, String action,
+                             Object... args) {
     try {
-      response = cf.get();
+      return cf.get();
     } catch (InterruptedException e) {
-      LOGGER.error("Thread was interrupted while trying to get index names from an alias. "
-          + "alias: {}", alias, e);
+      if (onFailure == OnFailure.RUNTIME) {
+        throw new RuntimeException(e);
+      }
+
+      if (onFailure == OnFailure.REQUIRED) {
+        Thread.currentThread().interrupt();
+        throw ExceptionsHelper.convertToElastic(e);
+      }
+
+      LOGGER.error("Thread was interrupted while trying to " + action, withCause(args, e));
       Thread.currentThread().interrupt();
     } catch (ExecutionException e) {
-      throw ExceptionsHelper.convertToElastic(e);
+      switch (onFailure) {
+        case RUNTIME:
+          throw new RuntimeException(e);
+        case ELASTIC:
+        case REQUIRED:
+          throw ExceptionsHelper.convertToElastic(e);
+        default:
+          LOGGER.error("Execution exception while trying to " + action, withCause(args, e));
+      }
     }
 
-    List<String> indexNameList = new ArrayList<>();
-    if (response != null) {
-      indexNameList = response.result().keySet().stream().toList();
-    }
+    return null;
+  }
+
+  private static Object[] withCause(Object[] args, Throwable cause) {
+    Object[] withCause = Arrays.copyOf(args, args.length + 1);
+    withCause[args.length] = cause;
 
-    return indexNameList;
+    return withCause;
   }
 }
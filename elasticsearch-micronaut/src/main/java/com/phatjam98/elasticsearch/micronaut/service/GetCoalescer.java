@@ -0,0 +1,253 @@
+package com.phatjam98.elasticsearch.micronaut.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces single document gets into {@code _mget} requests, one per index and document class.
+ * Like a DataLoader, gets are collected until the dispatch task runs, so every get issued while
+ * the dispatcher is busy, or within the optional window, shares one request.  Repeated ids in a
+ * batch are fetched once, and an id that fails only fails the gets of that id.
+ */
+final class GetCoalescer {
+  private static final Logger LOGGER = LoggerFactory.getLogger(GetCoalescer.class);
+
+  private final ElasticsearchAsyncClient client;
+  private final long windowNanos;
+  private final int maxBatch;
+  private final ScheduledExecutorService dispatcher;
+
+  private final Object lock = new Object();
+  private final Map<BatchKey, Batch<?>> batches = new HashMap<>();
+
+  GetCoalescer(ElasticsearchAsyncClient client, Duration window, int maxBatch) {
+    this.client = client;
+    this.windowNanos = window.toNanos();
+    this.maxBatch = Math.max(maxBatch, 1);
+    this.dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "elasticsearch-get-coalescer");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Queues a get for the next {@code _mget} of the index.
+   *
+   * @param index String name of the index
+   * @param id    String document id
+   * @param klass Class to decode the source into
+   * @param <T>   Class of the Protobuf resource
+   * @return CompletableFuture of the source, or null if the document does not exist
+   */
+  @SuppressWarnings("unchecked")
+  <T> CompletableFuture<T> get(String index, String id, Class<T> klass) {
+    var key = new BatchKey(index, klass);
+    CompletableFuture<T> future = new CompletableFuture<>();
+    Batch<T> full = null;
+
+    synchronized (lock) {
+      var batch = (Batch<T>) batches.computeIfAbsent(key, k -> new Batch<>(index, klass));
+      batch.add(id, future);
+
+      if (batch.size() >= maxBatch) {
+        batches.remove(key);
+        full = batch;
+      } else if (batch.size() == 1 && batch.waiting() == 1) {
+        Batch<T> scheduled = batch;
+
+        if (windowNanos > 0) {
+          dispatcher.schedule(() -> dispatch(key, scheduled), windowNanos, TimeUnit.NANOSECONDS);
+        } else {
+          dispatcher.execute(() -> dispatch(key, scheduled));
+        }
+      }
+    }
+
+    if (full != null) {
+      full.send();
+    }
+
+    return future;
+  }
+
+  /**
+   * Stops the dispatcher thread once the batches already scheduled have been sent.
+   */
+  void shutdown() {
+    dispatcher.shutdown();
+  }
+
+  private void dispatch(BatchKey key, Batch<?> batch) {
+    synchronized (lock) {
+      if (!batches.remove(key, batch)) {
+        return;
+      }
+    }
+
+    batch.send();
+  }
+
+  /**
+   * Fetches documents with {@code _mget}.  The result maps every requested id to its source,
+   * or to null when the document does not exist.
+   *
+   * @param client ElasticsearchAsyncClient
+   * @param index  String name of the index
+   * @param ids    ids to fetch
+   * @param klass  Class to decode sources into
+   * @param <T>    Class of the Protobuf resource
+   * @return CompletableFuture of the sources by id, in request order, failing if any id failed
+   */
+  static <T> CompletableFuture<Map<String, T>> multiGet(ElasticsearchAsyncClient client,
+                                                        String index, Collection<String> ids,
+                                                        Class<T> klass) {
+    return items(client, index, ids, klass).thenApply(GetCoalescer::sources);
+  }
+
+  /**
+   * Fetches documents with {@code _mget}, keeping the outcome of each id apart so a failed id
+   * does not fail the others.
+   */
+  private static <T> CompletableFuture<Map<String, Item<T>>> items(
+      ElasticsearchAsyncClient client, String index, Collection<String> ids, Class<T> klass) {
+    List<String> idList = new ArrayList<>(ids);
+
+    return client.mget(r -> r.index(index).ids(idList), klass)
+        .thenApply(GetCoalescer::items);
+  }
+
+  private static <T> Map<String, Item<T>> items(MgetResponse<T> response) {
+    Map<String, Item<T>> items = new LinkedHashMap<>();
+
+    for (MultiGetResponseItem<T> item : response.docs()) {
+      if (item.isFailure()) {
+        var failure = item.failure();
+        items.put(failure.id(), new Item<>(null, new IllegalStateException(
+            "Failed to get document " + failure.id() + ": " + failure.error().reason())));
+      } else {
+        var result = item.result();
+        items.put(result.id(), new Item<>(result.found() ? result.source() : null, null));
+      }
+    }
+
+    return items;
+  }
+
+  private static <T> Map<String, T> sources(Map<String, Item<T>> items) {
+    Map<String, T> sources = new LinkedHashMap<>();
+
+    items.forEach((id, item) -> {
+      if (item.failure != null) {
+        throw item.failure;
+      }
+
+      sources.put(id, item.source);
+    });
+
+    return sources;
+  }
+
+  private static final class Item<T> {
+    private final T source;
+    private final RuntimeException failure;
+
+    Item(T source, RuntimeException failure) {
+      this.source = source;
+      this.failure = failure;
+    }
+  }
+
+  private final class Batch<T> {
+    private final String index;
+    private final Class<T> klass;
+    private final Map<String, List<CompletableFuture<T>>> waiters = new LinkedHashMap<>();
+    private int waiting;
+
+    Batch(String index, Class<T> klass) {
+      this.index = index;
+      this.klass = klass;
+    }
+
+    void add(String id, CompletableFuture<T> future) {
+      waiters.computeIfAbsent(id, k -> new ArrayList<>(1)).add(future);
+      waiting++;
+    }
+
+    int size() {
+      return waiters.size();
+    }
+
+    int waiting() {
+      return waiting;
+    }
+
+    void send() {
+      items(client, index, waiters.keySet(), klass).whenComplete((items, exception) -> {
+        if (exception != null) {
+          LOGGER.error("Exception while getting {} documents from {}", waiters.size(), index,
+              exception);
+          waiters.values().forEach(futures ->
+              futures.forEach(future -> future.completeExceptionally(exception)));
+          return;
+        }
+
+        // Only the callers of a failed id see its failure, the rest of the batch completes.
+        waiters.forEach((id, futures) -> {
+          var item = items.get(id);
+
+          if (item != null && item.failure != null) {
+            LOGGER.error("Exception while getting document {} from {}", id, index, item.failure);
+            futures.forEach(future -> future.completeExceptionally(item.failure));
+          } else {
+            futures.forEach(future -> future.complete(item == null ? null : item.source));
+          }
+        });
+      });
+    }
+  }
+
+  private static final class BatchKey {
+    private final String index;
+    private final Class<?> klass;
+
+    BatchKey(String index, Class<?> klass) {
+      this.index = index;
+      this.klass = klass;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+
+      if (!(o instanceof BatchKey)) {
+        return false;
+      }
+
+      BatchKey other = (BatchKey) o;
+      return index.equals(other.index) && klass.equals(other.klass);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(index, klass);
+    }
+  }
+}
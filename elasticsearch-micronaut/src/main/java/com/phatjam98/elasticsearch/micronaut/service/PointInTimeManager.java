@@ -0,0 +1,203 @@
+package com.phatjam98.elasticsearch.micronaut.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.core.OpenPointInTimeResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opens, extends and closes the points in time behind search_after pagination.  A point in time is
+ * opened for the first page and shared by every later page of the same cursor.  Each page extends
+ * it by twice the average time between its pages, between {@link #MIN_KEEP_ALIVE} and the
+ * maximum keep alive, so slow readers keep their point in time and abandoned ones are released by
+ * the cluster soon after.  Points in time are closed after their last page, or by a periodic sweep
+ * once idle, and no more than maxOpen are open at once.
+ */
+final class PointInTimeManager {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PointInTimeManager.class);
+
+  static final Duration MIN_KEEP_ALIVE = Duration.ofSeconds(10);
+
+  private final ElasticsearchAsyncClient client;
+  private final long keepAliveNanos;
+  private final long maxKeepAliveNanos;
+  private final long idleTimeoutNanos;
+  private final int maxOpen;
+  private final PointInTimeStats stats = new PointInTimeStats();
+  private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService sweeper;
+
+  PointInTimeManager(ElasticsearchAsyncClient client, Duration keepAlive, Duration maxKeepAlive,
+                     Duration idleTimeout, int maxOpen) {
+    this.client = client;
+    this.keepAliveNanos = keepAlive.toNanos();
+    this.maxKeepAliveNanos = Math.max(maxKeepAlive.toNanos(), keepAliveNanos);
+    this.idleTimeoutNanos = idleTimeout.toNanos();
+    this.maxOpen = Math.max(maxOpen, 1);
+    this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "elasticsearch-pit-sweeper");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    long sweepNanos = Math.max(idleTimeoutNanos / 2, TimeUnit.SECONDS.toNanos(1));
+    sweeper.scheduleAtFixedRate(this::sweep, sweepNanos, sweepNanos, TimeUnit.NANOSECONDS);
+  }
+
+  PointInTimeStats stats() {
+    return stats;
+  }
+
+  /**
+   * Opens a point in time on the index.
+   *
+   * @param indexName String name of the index or alias
+   * @return CompletableFuture of the point in time id, failed with IllegalStateException when
+   *     maxOpen points in time are already open
+   */
+  CompletableFuture<String> open(String indexName) {
+    if (!stats.reserve(maxOpen)) {
+      return CompletableFuture.failedFuture(new IllegalStateException(
+          "Refusing to open a point in time on " + indexName + ", " + maxOpen + " are open"));
+    }
+
+    return client.openPointInTime(r -> r.index(indexName)
+            .keepAlive(t -> t.time(timeValue(keepAliveNanos))))
+        .thenApply(OpenPointInTimeResponse::id)
+        .whenComplete((pitId, exception) -> {
+          if (exception != null) {
+            stats.release();
+            LOGGER.error("Exception while opening a point in time. index: {}", indexName,
+                exception);
+          } else {
+            stats.recordOpened();
+            leases.put(pitId, new Lease(System.nanoTime(), keepAliveNanos));
+          }
+        });
+  }
+
+  /**
+   * Records a page read from the point in time and returns how long to keep it alive for.
+   *
+   * @param pitId String point in time id
+   * @return String Elasticsearch time value
+   */
+  String keepAlive(String pitId) {
+    var lease = leases.get(pitId);
+
+    return timeValue(lease == null ? keepAliveNanos : lease.touch(System.nanoTime()));
+  }
+
+  /**
+   * Follows a point in time whose id Elasticsearch changed in a search response.
+   *
+   * @param pitId    String id the page was searched with
+   * @param newPitId String id returned with the page
+   */
+  void renew(String pitId, String newPitId) {
+    if (pitId.equals(newPitId)) {
+      return;
+    }
+
+    var lease = leases.remove(pitId);
+
+    if (lease != null) {
+      leases.put(newPitId, lease);
+    }
+  }
+
+  /**
+   * Closes a point in time opened by this manager.  Unknown ids are ignored.
+   *
+   * @param pitId String point in time id
+   */
+  void close(String pitId) {
+    close(pitId, false);
+  }
+
+  private void close(String pitId, boolean idle) {
+    if (leases.remove(pitId) == null) {
+      return;
+    }
+
+    stats.release();
+    stats.recordClosed(idle);
+    client.closePointInTime(r -> r.id(pitId)).whenComplete((response, exception) -> {
+      if (exception != null) {
+        LOGGER.warn("Exception while closing a point in time", exception);
+      }
+    });
+  }
+
+  /**
+   * Closes points in time without a page within the idle timeout, or their keep alive, after
+   * which the cluster has already released them.
+   */
+  void sweep() {
+    long now = System.nanoTime();
+
+    leases.forEach((pitId, lease) -> {
+      if (lease.idleNanos(now) > Math.min(idleTimeoutNanos, lease.keepAliveNanos())) {
+        LOGGER.debug("Closing idle point in time {}", pitId);
+        close(pitId, true);
+      }
+    });
+  }
+
+  /**
+   * Stops the sweeper and closes every point in time still open.
+   */
+  void shutdown() {
+    sweeper.shutdownNow();
+    leases.keySet().forEach(this::close);
+  }
+
+  private static String timeValue(long nanos) {
+    return Math.max(TimeUnit.NANOSECONDS.toSeconds(nanos), 1) + "s";
+  }
+
+  private final class Lease {
+    private long lastUsed;
+    private long averageInterval;
+    private long keepAlive;
+    private int pages;
+
+    Lease(long now, long keepAlive) {
+      this.lastUsed = now;
+      this.keepAlive = keepAlive;
+    }
+
+    /**
+     * The first page keeps the initial keep alive, there is no interval to go on yet.
+     */
+    synchronized long touch(long now) {
+      long interval = now - lastUsed;
+      lastUsed = now;
+
+      if (pages++ == 0) {
+        return keepAlive;
+      }
+
+      averageInterval = pages == 2 ? interval : (3 * averageInterval + interval) / 4;
+      keepAlive = Math.min(Math.max(2 * averageInterval, MIN_KEEP_ALIVE.toNanos()),
+          maxKeepAliveNanos);
+
+      return keepAlive;
+    }
+
+    synchronized long idleNanos(long now) {
+      return now - lastUsed;
+    }
+
+    synchronized long keepAliveNanos() {
+      return keepAlive;
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package com.phatjam98.elasticsearch.micronaut.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gauges and counters of the points in time opened for search_after pagination.  Every open
+ * point in time pins segments and heap on the cluster, so {@link #getOpen()} is the one to watch;
+ * a growing {@link #getExpired()} means clients are abandoning paginations.
+ */
+public class PointInTimeStats {
+  private final AtomicInteger open = new AtomicInteger();
+  private final LongAdder opened = new LongAdder();
+  private final LongAdder closed = new LongAdder();
+  private final LongAdder expired = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+
+  /**
+   * Reserves a slot for a new point in time unless maxOpen are already open.
+   */
+  boolean reserve(int maxOpen) {
+    while (true) {
+      int current = open.get();
+
+      if (current >= maxOpen) {
+        rejected.increment();
+        return false;
+      }
+
+      if (open.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  void release() {
+    open.decrementAndGet();
+  }
+
+  void recordOpened() {
+    opened.increment();
+  }
+
+  void recordClosed(boolean idle) {
+    closed.increment();
+
+    if (idle) {
+      expired.increment();
+    }
+  }
+
+  /**
+   * Points in time currently open, or being opened.
+   *
+   * @return open points in time
+   */
+  public int getOpen() {
+    return open.get();
+  }
+
+  public long getOpened() {
+    return opened.sum();
+  }
+
+  public long getClosed() {
+    return closed.sum();
+  }
+
+  /**
+   * Points in time closed because no page was requested within the idle timeout.
+   *
+   * @return points in time closed while idle
+   */
+  public long getExpired() {
+    return expired.sum();
+  }
+
+  /**
+   * Points in time refused because the maximum were already open.
+   *
+   * @return rejected points in time
+   */
+  public long getRejected() {
+    return rejected.sum();
+  }
+}
@@ -0,0 +1,363 @@
+package com.phatjam98.elasticsearch.micronaut.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.ErrorResponse;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonpDeserializer;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects searches issued within a short window and sends them as one {@code _msearch}, so
+ * bursts of small searches share a single HTTP request and coordinating node round-trip.  A batch
+ * is sent when the window after its first search elapses or when it reaches the maximum size,
+ * whichever is first.  Each caller's future completes with its own response or error.
+ *
+ * <p>Only searches whose URL parameters can be expressed in an {@code _msearch} header are
+ * coalesced; {@link #canCoalesce} tells the caller when to search directly instead.
+ */
+final class SearchCoalescer {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SearchCoalescer.class);
+  private static final ContentType NDJSON = ContentType.create("application/x-ndjson");
+  private static final int BUFFER_SIZE = 16 * 1024;
+
+  /**
+   * Search URL parameters that {@code _msearch} accepts per search in the header line.
+   */
+  private static final Set<String> HEADER_PARAMETERS = Set.of("routing", "preference",
+      "search_type", "request_cache", "allow_no_indices", "ignore_unavailable",
+      "expand_wildcards", "allow_partial_search_results", "ignore_throttled");
+  private static final String TYPED_KEYS = "typed_keys";
+
+  private final RestClient restClient;
+  private final JsonpMapper mapper;
+  private final JsonFactory factory;
+  private final long windowNanos;
+  private final int maxBatch;
+  private final SearchCoalescingStats stats = new SearchCoalescingStats();
+  private final ScheduledExecutorService scheduler;
+
+  private final Object lock = new Object();
+  private List<PendingSearch<?>> batch = new ArrayList<>();
+  private ScheduledFuture<?> scheduledFlush;
+
+  /**
+   * Searches are encoded and decoded with the transport's mapper, so a batched search decodes
+   * exactly as it would have if sent on its own.  The header lines and the split of the
+   * {@code _msearch} response are plain JSON, read with the mapper's factory when it has one.
+   */
+  private SearchCoalescer(RestClient restClient, JsonpMapper mapper, Duration window,
+                          int maxBatch) {
+    this.restClient = restClient;
+    this.mapper = mapper;
+    this.factory = mapper instanceof JacksonJsonpMapper
+        ? ((JacksonJsonpMapper) mapper).objectMapper().getFactory() : new JsonFactory();
+    this.windowNanos = window.toNanos();
+    this.maxBatch = Math.max(maxBatch, 1);
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "elasticsearch-search-coalescer");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Creates a coalescer for the client, or returns null when the client does not use the low
+   * level RestClient.
+   *
+   * @param client   ElasticsearchAsyncClient
+   * @param window   how long a batch waits for more searches after its first
+   * @param maxBatch searches that fill a batch and send it immediately
+   * @return SearchCoalescer or null
+   */
+  static SearchCoalescer create(ElasticsearchAsyncClient client, Duration window, int maxBatch) {
+    if (!(client._transport() instanceof RestClientTransport)) {
+      LOGGER.warn("Search coalescing needs a RestClientTransport, searches will not be coalesced");
+      return null;
+    }
+
+    var transport = (RestClientTransport) client._transport();
+
+    return new SearchCoalescer(transport.restClient(), transport.jsonpMapper(), window, maxBatch);
+  }
+
+  SearchCoalescingStats stats() {
+    return stats;
+  }
+
+  /**
+   * Stops the scheduler thread once the batches already scheduled have been sent.
+   */
+  void shutdown() {
+    scheduler.shutdown();
+  }
+
+  /**
+   * Whether the search can be sent as part of an {@code _msearch}.  Searches using URL parameters
+   * the header cannot carry, such as scroll, must be sent on their own.
+   *
+   * @param searchRequest SearchRequest
+   * @return true if the search can be coalesced
+   */
+  static boolean canCoalesce(SearchRequest searchRequest) {
+    for (String parameter : SearchRequest._ENDPOINT.queryParameters(searchRequest).keySet()) {
+      if (!parameter.equals(TYPED_KEYS) && !HEADER_PARAMETERS.contains(parameter)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Queues a search for the next batch.
+   *
+   * @param searchRequest SearchRequest
+   * @param klass         Class to decode hit sources into
+   * @param <T>           Class of the Protobuf resource
+   * @return CompletableFuture of this search's response
+   */
+  <T> CompletableFuture<SearchResponse<T>> search(SearchRequest searchRequest, Class<T> klass) {
+    var pending = new PendingSearch<>(searchRequest, klass);
+    List<PendingSearch<?>> full = null;
+
+    synchronized (lock) {
+      batch.add(pending);
+
+      if (batch.size() >= maxBatch) {
+        full = takeBatch();
+      } else if (batch.size() == 1) {
+        scheduledFlush = scheduler.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+      }
+    }
+
+    if (full != null) {
+      send(full);
+    }
+
+    return pending.future;
+  }
+
+  private void flush() {
+    List<PendingSearch<?>> ready;
+
+    synchronized (lock) {
+      if (batch.isEmpty()) {
+        return;
+      }
+
+      ready = takeBatch();
+    }
+
+    send(ready);
+  }
+
+  private List<PendingSearch<?>> takeBatch() {
+    List<PendingSearch<?>> taken = batch;
+    batch = new ArrayList<>(maxBatch);
+
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+
+    return taken;
+  }
+
+  private void send(List<PendingSearch<?>> searches) {
+    long now = System.nanoTime();
+    stats.recordBatch(searches.size());
+
+    for (PendingSearch<?> pending : searches) {
+      stats.recordWait(now - pending.queuedAt);
+    }
+
+    Request request = new Request("POST", "/_msearch");
+    request.addParameter(TYPED_KEYS, "true");
+
+    try {
+      request.setEntity(new ByteArrayEntity(encode(searches), NDJSON));
+    } catch (IOException | RuntimeException e) {
+      fail(searches, e);
+      return;
+    }
+
+    restClient.performRequestAsync(request, new ResponseListener() {
+      @Override
+      public void onSuccess(Response response) {
+        try (InputStream in = response.getEntity().getContent()) {
+          decode(in, searches);
+        } catch (Exception e) {
+          fail(searches, e);
+        }
+      }
+
+      @Override
+      public void onFailure(Exception exception) {
+        fail(searches, exception);
+      }
+    });
+  }
+
+  private byte[] encode(List<PendingSearch<?>> searches) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+
+    for (PendingSearch<?> pending : searches) {
+      try (JsonGenerator header = factory.createGenerator(out)) {
+        header.writeStartObject();
+
+        if (!pending.request.index().isEmpty()) {
+          header.writeArrayFieldStart("index");
+
+          for (String index : pending.request.index()) {
+            header.writeString(index);
+          }
+
+          header.writeEndArray();
+        }
+
+        for (Map.Entry<String, String> parameter
+            : SearchRequest._ENDPOINT.queryParameters(pending.request).entrySet()) {
+          if (HEADER_PARAMETERS.contains(parameter.getKey())) {
+            header.writeStringField(parameter.getKey(), parameter.getValue());
+          }
+        }
+
+        header.writeEndObject();
+      }
+
+      out.write('\n');
+
+      try (var body = mapper.jsonProvider().createGenerator(out)) {
+        pending.request.serialize(body, mapper);
+      }
+
+      out.write('\n');
+    }
+
+    return out.toByteArray();
+  }
+
+  /**
+   * Walks the {@code responses} array, handing each item to the search at the same position.
+   * Items are copied out one at a time so a failed item only fails its own search.
+   */
+  private void decode(InputStream in, List<PendingSearch<?>> searches) throws IOException {
+    int index = 0;
+
+    try (JsonParser parser = factory.createParser(in)) {
+      parser.nextToken();
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+
+        if (!"responses".equals(field)) {
+          parser.skipChildren();
+          continue;
+        }
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+          ByteArrayOutputStream item = new ByteArrayOutputStream();
+
+          try (JsonGenerator generator = factory.createGenerator(item)) {
+            generator.copyCurrentStructure(parser);
+          }
+
+          if (index < searches.size()) {
+            searches.get(index).complete(item.toByteArray());
+          }
+
+          index++;
+        }
+      }
+    }
+
+    if (index < searches.size()) {
+      fail(searches.subList(index, searches.size()),
+          new IllegalStateException("_msearch returned " + index + " responses for "
+              + searches.size() + " searches"));
+    }
+  }
+
+  private void fail(List<PendingSearch<?>> searches, Exception exception) {
+    LOGGER.error("Exception while sending {} coalesced searches", searches.size(), exception);
+    stats.recordFailedBatch();
+
+    for (PendingSearch<?> pending : searches) {
+      pending.future.completeExceptionally(exception);
+    }
+  }
+
+  private boolean isError(byte[] item) throws IOException {
+    try (JsonParser parser = factory.createParser(item)) {
+      parser.nextToken();
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        if ("error".equals(parser.getCurrentName())) {
+          return true;
+        }
+
+        parser.nextToken();
+        parser.skipChildren();
+      }
+    }
+
+    return false;
+  }
+
+  private final class PendingSearch<T> {
+    private final SearchRequest request;
+    private final JsonpDeserializer<SearchResponse<T>> deserializer;
+    private final CompletableFuture<SearchResponse<T>> future = new CompletableFuture<>();
+    private final long queuedAt = System.nanoTime();
+
+    PendingSearch(SearchRequest request, Class<T> klass) {
+      this.request = request;
+      this.deserializer = SearchResponse.createSearchResponseDeserializer(
+          JsonpDeserializer.of(klass));
+    }
+
+    void complete(byte[] item) {
+      try (var parser = mapper.jsonProvider().createParser(new ByteArrayInputStream(item))) {
+        if (isError(item)) {
+          future.completeExceptionally(new ElasticsearchException("msearch",
+              ErrorResponse._DESERIALIZER.deserialize(parser, mapper)));
+        } else {
+          future.complete(deserializer.deserialize(parser, mapper));
+        }
+      } catch (Exception e) {
+        future.completeExceptionally(e);
+      }
+    }
+  }
+}
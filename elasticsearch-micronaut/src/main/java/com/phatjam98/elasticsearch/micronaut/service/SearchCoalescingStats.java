@@ -0,0 +1,80 @@
+package com.phatjam98.elasticsearch.micronaut.service;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of searches coalesced into {@code _msearch} requests, used to tune
+ * {@code elasticsearch.search.coalescing.window} and {@code max-batch}.  Wait time is measured
+ * from when a search is queued to when its batch is sent.
+ */
+public class SearchCoalescingStats {
+  private final LongAdder batches = new LongAdder();
+  private final LongAdder searches = new LongAdder();
+  private final LongAdder failedBatches = new LongAdder();
+  private final LongAdder waitNanos = new LongAdder();
+  private final LongAccumulator maxBatchSize = new LongAccumulator(Math::max, 0);
+  private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+  void recordBatch(int size) {
+    batches.increment();
+    searches.add(size);
+    maxBatchSize.accumulate(size);
+  }
+
+  void recordWait(long nanos) {
+    waitNanos.add(nanos);
+    maxWaitNanos.accumulate(nanos);
+  }
+
+  void recordFailedBatch() {
+    failedBatches.increment();
+  }
+
+  public long getBatches() {
+    return batches.sum();
+  }
+
+  public long getSearches() {
+    return searches.sum();
+  }
+
+  /**
+   * Batches whose {@code _msearch} request failed as a whole, failing every search in them.
+   *
+   * @return failed batches
+   */
+  public long getFailedBatches() {
+    return failedBatches.sum();
+  }
+
+  public long getMaxBatchSize() {
+    return maxBatchSize.get();
+  }
+
+  /**
+   * Average number of searches sent per {@code _msearch}.
+   *
+   * @return searches per batch, or 0 if nothing has been sent
+   */
+  public double getAverageBatchSize() {
+    long sent = batches.sum();
+
+    return sent == 0 ? 0 : (double) searches.sum() / sent;
+  }
+
+  /**
+   * Average time a search waited for its batch to be sent, the latency added by coalescing.
+   *
+   * @return average wait in nanoseconds, or 0 if nothing has been sent
+   */
+  public long getAverageWaitNanos() {
+    long sent = searches.sum();
+
+    return sent == 0 ? 0 : waitNanos.sum() / sent;
+  }
+
+  public long getMaxWaitNanos() {
+    return maxWaitNanos.get();
+  }
+}
@@ -0,0 +1,193 @@
+package com.phatjam98.elasticsearch.micronaut.service;
+
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Message;
+import com.phatjam98.protos.service.protos.SearchCriteria;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of search responses keyed on the index, the response class and the
+ * deterministically serialized {@link SearchCriteria}, pagination included.  Entries are weighed
+ * by an estimate of their size, expire a fixed time after they are cached and are dropped when the
+ * service writes to or refreshes their index.
+ *
+ * <p>Every invalidation bumps a generation counter for the indices written to.  A search takes the
+ * generation of its index before it is sent and its response is only cached if no write happened
+ * in between, so a response read before a write is never served after it.
+ *
+ * <p>Cached responses are shared between callers, so their hit sources must not be modified.
+ */
+final class SearchResultCache {
+  private static final int HIT_OVERHEAD = 256;
+  private static final int MAP_SOURCE_ESTIMATE = 1024;
+
+  private final Cache<Key, SearchResponse<?>> cache;
+  private final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+  private final AtomicLong allGeneration = new AtomicLong();
+
+  SearchResultCache(long maxBytes, Duration ttl) {
+    this.cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxBytes)
+        .weigher((Key key, SearchResponse<?> response) -> weigh(key, response))
+        .expireAfterWrite(ttl)
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Builds the cache key for a search.  Map fields are serialized in key order so equal criteria
+   * always produce the same bytes.
+   *
+   * @param indexName      String name of the index or alias searched
+   * @param searchCriteria SearchCriteria
+   * @param klass          Class hit sources are decoded into
+   * @return Key
+   */
+  static Key key(String indexName, SearchCriteria searchCriteria, Class<?> klass) {
+    ByteString.Output out = ByteString.newOutput(searchCriteria.getSerializedSize());
+    CodedOutputStream coded = CodedOutputStream.newInstance(out);
+    coded.useDeterministicSerialization();
+
+    try {
+      searchCriteria.writeTo(coded);
+      coded.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return new Key(indexName, klass, out.toByteString());
+  }
+
+  @SuppressWarnings("unchecked")
+  <T> SearchResponse<T> get(Key key) {
+    return (SearchResponse<T>) cache.getIfPresent(key);
+  }
+
+  /**
+   * Returns the write generation of the key's index, to be taken before its search is sent.
+   *
+   * @param key Key
+   * @return long that changes whenever the index is invalidated
+   */
+  long generation(Key key) {
+    long generation = allGeneration.get();
+
+    for (Map.Entry<String, AtomicLong> entry : generations.entrySet()) {
+      if (key.matches(entry.getKey())) {
+        generation += entry.getValue().get();
+      }
+    }
+
+    return generation;
+  }
+
+  /**
+   * Caches the response unless its index was invalidated since the generation was taken.
+   *
+   * @param key        Key
+   * @param response   SearchResponse
+   * @param generation long from {@link #generation(Key)} taken before the search was sent
+   */
+  void put(Key key, SearchResponse<?> response, long generation) {
+    if (generation(key) != generation) {
+      return;
+    }
+
+    cache.put(key, response);
+
+    // An invalidation between the check and the put bumped the generation before dropping
+    // entries, so checking again catches the response it missed.
+    if (generation(key) != generation) {
+      cache.asMap().remove(key, response);
+    }
+  }
+
+  /**
+   * Drops the entries for the given indices.  An entry cached under an alias is dropped when one
+   * of its versioned indices, named {@code alias-version} by IndexUtils, is written to, and the
+   * other way around.
+   *
+   * @param indices names of the indices written to
+   */
+  void invalidate(Collection<String> indices) {
+    indices.forEach(index ->
+        generations.computeIfAbsent(index, name -> new AtomicLong()).incrementAndGet());
+    cache.asMap().keySet().removeIf(key -> indices.stream().anyMatch(key::matches));
+  }
+
+  void invalidateAll() {
+    allGeneration.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  CacheStats stats() {
+    return cache.stats();
+  }
+
+  long size() {
+    return cache.size();
+  }
+
+  private static int weigh(Key key, SearchResponse<?> response) {
+    long weight = key.criteria.size() + key.indexName.length();
+
+    for (Hit<?> hit : response.hits().hits()) {
+      Object source = hit.source();
+      weight += HIT_OVERHEAD + (source instanceof Message
+          ? ((Message) source).getSerializedSize() : MAP_SOURCE_ESTIMATE);
+    }
+
+    return (int) Math.min(weight, Integer.MAX_VALUE);
+  }
+
+  static final class Key {
+    private final String indexName;
+    private final Class<?> klass;
+    private final ByteString criteria;
+
+    private Key(String indexName, Class<?> klass, ByteString criteria) {
+      this.indexName = indexName;
+      this.klass = klass;
+      this.criteria = criteria;
+    }
+
+    boolean matches(String written) {
+      return indexName.equals(written) || written.startsWith(indexName + "-")
+          || indexName.startsWith(written + "-");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+
+      if (!(o instanceof Key)) {
+        return false;
+      }
+
+      Key other = (Key) o;
+      return indexName.equals(other.indexName) && klass.equals(other.klass)
+          && criteria.equals(other.criteria);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(indexName, klass, criteria);
+    }
+  }
+}
@@ -0,0 +1,242 @@
+package com.phatjam98.elasticsearch.micronaut.service;
+
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.SourceConfig;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.elasticsearch.ExceptionsHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads every hit of a point in time as N slices searched in parallel, each paging with
+ * search_after in {@code _shard_doc} order.  Slices hand their hits to the consumer through a
+ * bounded queue, so a slow consumer blocks the slices rather than letting hits pile up in memory.
+ * The point in time's keep alive, id changes and closing go through the given callbacks, so a
+ * managed point in time is kept alive and released like any other.  It is closed once every slice
+ * is done or the export is closed.
+ *
+ * @param <T> Class of the Protobuf resource
+ */
+final class SlicedExport<T> implements Iterator<T>, AutoCloseable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SlicedExport.class);
+  private static final Object SLICE_DONE = new Object();
+
+  private final Query query;
+  private final SourceConfig source;
+  private final int slices;
+  private final int pageSize;
+  private final Function<SearchRequest, CompletableFuture<SearchResponse<T>>> search;
+  private final Function<String, String> keepAlive;
+  private final BiConsumer<String, String> renewPit;
+  private final Consumer<String> closePit;
+  private final AtomicReference<String> pit;
+  private final BlockingQueue<Object> queue;
+  private final ExecutorService executor;
+  private final AtomicBoolean closed = new AtomicBoolean();
+  private final AtomicInteger running;
+  private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+  private int slicesDone;
+  private Object next;
+
+  SlicedExport(Query query, SourceConfig source, String pitId, int slices, int pageSize,
+               Function<SearchRequest, CompletableFuture<SearchResponse<T>>> search,
+               Function<String, String> keepAlive, BiConsumer<String, String> renewPit,
+               Consumer<String> closePit) {
+    this.query = query;
+    this.source = source;
+    this.slices = Math.max(slices, 1);
+    this.pageSize = pageSize;
+    this.search = search;
+    this.keepAlive = keepAlive;
+    this.renewPit = renewPit;
+    this.closePit = closePit;
+    this.pit = new AtomicReference<>(pitId);
+    this.queue = new ArrayBlockingQueue<>(2 * pageSize);
+    this.running = new AtomicInteger(this.slices);
+
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(
+        Math.min(this.slices, Runtime.getRuntime().availableProcessors()), runnable -> {
+          Thread thread = new Thread(runnable,
+              "elasticsearch-export-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /**
+   * Starts searching every slice.
+   */
+  SlicedExport<T> start() {
+    for (int slice = 0; slice < slices; slice++) {
+      int sliceId = slice;
+      executor.execute(() -> readSlice(sliceId));
+    }
+
+    executor.shutdown();
+
+    return this;
+  }
+
+  private void readSlice(int sliceId) {
+    try {
+      List<String> searchAfter = List.of();
+
+      while (!closed.get()) {
+        SearchResponse<T> response = search.apply(request(sliceId, searchAfter)).join();
+        List<Hit<T>> hits = response.hits().hits();
+
+        if (response.pitId() != null) {
+          String pitId = pit.getAndSet(response.pitId());
+
+          if (pitId != null && !pitId.equals(response.pitId())) {
+            renewPit.accept(pitId, response.pitId());
+          }
+        }
+
+        for (Hit<T> hit : hits) {
+          if (hit.source() != null) {
+            queue.put(hit.source());
+          }
+        }
+
+        if (hits.size() < pageSize) {
+          break;
+        }
+
+        searchAfter = hits.get(hits.size() - 1).sort();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    } catch (RuntimeException e) {
+      if (!closed.get()) {
+        LOGGER.error("Exception while exporting slice {} of {}", sliceId, slices, e);
+        failure.compareAndSet(null, e);
+      }
+    } finally {
+      if (running.decrementAndGet() == 0) {
+        closePointInTime();
+      }
+    }
+
+    try {
+      queue.put(SLICE_DONE);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private SearchRequest request(int sliceId, List<String> searchAfter) {
+    String pitId = pit.get();
+    SearchRequest.Builder builder = new SearchRequest.Builder()
+        .query(query)
+        .size(pageSize)
+        .trackTotalHits(t -> t.enabled(false))
+        .pit(p -> p.id(pitId).keepAlive(t -> t.time(keepAlive.apply(pitId))))
+        .sort(s -> s.field(f -> f.field("_shard_doc").order(SortOrder.Asc)));
+
+    if (source != null) {
+      builder.source(source);
+    }
+
+    // Elasticsearch rejects a single slice, one slice is the whole point in time.
+    if (slices > 1) {
+      builder.slice(s -> s.id(sliceId).max(slices));
+    }
+
+    if (!searchAfter.isEmpty()) {
+      builder.searchAfter(searchAfter);
+    }
+
+    return builder.build();
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (next == null && slicesDone < slices) {
+      throwIfFailed();
+
+      Object taken;
+
+      try {
+        taken = queue.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        close();
+        throw new IllegalStateException("Interrupted while exporting", e);
+      }
+
+      if (taken == SLICE_DONE) {
+        slicesDone++;
+      } else {
+        next = taken;
+      }
+    }
+
+    if (next == null) {
+      throwIfFailed();
+    }
+
+    return next != null;
+  }
+
+  private void throwIfFailed() {
+    var exception = failure.get();
+
+    if (exception != null) {
+      close();
+      throw ExceptionsHelper.convertToElastic(exception);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+
+    T source = (T) next;
+    next = null;
+
+    return source;
+  }
+
+  /**
+   * Stops the slices and closes the point in time.  Safe to call more than once.
+   */
+  @Override
+  public void close() {
+    if (closed.compareAndSet(false, true)) {
+      executor.shutdownNow();
+      closePointInTime();
+    }
+  }
+
+  private void closePointInTime() {
+    String pitId = pit.getAndSet(null);
+
+    if (pitId != null) {
+      closePit.accept(pitId);
+    }
+  }
+}
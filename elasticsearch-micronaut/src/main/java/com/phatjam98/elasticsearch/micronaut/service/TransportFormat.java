@@ -0,0 +1,70 @@
+package com.phatjam98.elasticsearch.micronaut.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import java.util.Locale;
+
+/**
+ * Content type used for search and bulk bodies, set with {@code elasticsearch.transport.format}.
+ * Binary formats carry the same documents as JSON, so the protobuf codecs work unchanged; numbers
+ * such as geometry coordinates are just encoded more compactly.
+ */
+public enum TransportFormat {
+  JSON("application/json", (byte) '\n'),
+  SMILE("application/smile", (byte) 0xFF),
+  // Elasticsearch cannot split a CBOR stream, so CBOR bulk bodies are sent as JSON.
+  CBOR("application/cbor", (byte) 0);
+
+  private final String mimeType;
+  private final byte bulkSeparator;
+
+  TransportFormat(String mimeType, byte bulkSeparator) {
+    this.mimeType = mimeType;
+    this.bulkSeparator = bulkSeparator;
+  }
+
+  /**
+   * Parses a configured format name, ignoring case.  A null or empty name is JSON.
+   *
+   * @param name format name
+   * @return TransportFormat
+   */
+  public static TransportFormat from(String name) {
+    if (name == null || name.isBlank()) {
+      return JSON;
+    }
+
+    return valueOf(name.trim().toUpperCase(Locale.ROOT));
+  }
+
+  public String mimeType() {
+    return mimeType;
+  }
+
+  byte bulkSeparator() {
+    return bulkSeparator;
+  }
+
+  boolean supportsBulk() {
+    return this != CBOR;
+  }
+
+  /**
+   * Creates the Jackson factory for this format.  Smile end markers are disabled since 0xFF
+   * separates bulk lines.
+   *
+   * @return JsonFactory
+   */
+  JsonFactory jsonFactory() {
+    switch (this) {
+      case SMILE:
+        return SmileFactory.builder().disable(SmileGenerator.Feature.WRITE_END_MARKER).build();
+      case CBOR:
+        return new CBORFactory();
+      default:
+        return new JsonFactory();
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package com.phatjam98.elasticsearch.micronaut.factory
+
+import org.apache.http.HttpHost
+import org.apache.http.entity.ContentType
+import org.apache.http.entity.StringEntity
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder
+import org.elasticsearch.client.Request
+import org.elasticsearch.client.RestClient
+import org.testcontainers.elasticsearch.ElasticsearchContainer
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class CompressingHttpAsyncClientBuilderSpec extends Specification {
+
+    @Shared
+    ElasticsearchContainer container = new ElasticsearchContainer("docker.elastic.co/elasticsearch/elasticsearch:7.15.2")
+
+    void setupSpec() {
+        container.start()
+    }
+
+    void cleanupSpec() {
+        container.stop()
+    }
+
+    @Unroll
+    def "#algorithm compresses bodies over the threshold"() {
+        given:
+        var stats = new CompressionStats()
+        var builder = new CompressingHttpAsyncClientBuilder(algorithm, 1024, true, stats)
+        var restClient = RestClient.builder(HttpHost.create(container.getHttpHostAddress()))
+                .setHttpClientConfigCallback { builder }
+                .build()
+        var large = new Request("POST", "/compression/_doc")
+        large.setEntity(new StringEntity('{"value":"' + ("abc" * 1000) + '"}', ContentType.APPLICATION_JSON))
+        var small = new Request("POST", "/compression/_doc")
+        small.setEntity(new StringEntity('{"value":"abc"}', ContentType.APPLICATION_JSON))
+
+        when:
+        var largeResponse = restClient.performRequest(large)
+        var smallResponse = restClient.performRequest(small)
+
+        then:
+        largeResponse.getStatusLine().getStatusCode() == 201
+        smallResponse.getStatusLine().getStatusCode() == 201
+        stats.getRequests() == 2
+        stats.getCompressedRequests() == 1
+        stats.getCompressionRatio() < 0.1
+        stats.getSentBytes() < stats.getRawBytes()
+        stats.getSizeDistribution()*.getRequests() == [1L, 1L]
+        stats.getSizeDistribution()[0].getMaxBytes() < 1024
+        stats.getSizeDistribution()[0].getSentRatio() == 1.0d
+        stats.getSizeDistribution()[1].getMinBytes() >= 1024
+        stats.getSizeDistribution()[1].getCompressedRequests() == 1
+
+        cleanup:
+        restClient.close()
+
+        where:
+        algorithm << CompressingHttpAsyncClientBuilder.Algorithm.values()
+    }
+
+    def "acceptGzip asks for gzip responses without compressing requests"() {
+        given:
+        var restClient = RestClient.builder(HttpHost.create(container.getHttpHostAddress()))
+                .setHttpClientConfigCallback { CompressingHttpAsyncClientBuilder.acceptGzip(HttpAsyncClientBuilder.create()) }
+                .build()
+
+        when:
+        var response = restClient.performRequest(new Request("GET", "/"))
+
+        then:
+        response.getStatusLine().getStatusCode() == 200
+        response.getHeader("Content-Encoding") == "gzip"
+
+        cleanup:
+        restClient.close()
+    }
+}
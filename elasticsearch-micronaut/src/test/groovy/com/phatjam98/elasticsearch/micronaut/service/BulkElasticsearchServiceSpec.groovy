@@ -24,6 +24,9 @@ import org.elasticsearch.client.RestClient
 import org.testcontainers.elasticsearch.ElasticsearchContainer
 import spock.lang.Shared
 import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
 
 class BulkElasticsearchServiceSpec extends Specification {
     private ListAppender<ILoggingEvent> listAppender
@@ -49,6 +52,7 @@ class BulkElasticsearchServiceSpec extends Specification {
     }
 
     void cleanupSpec() {
+        service.close()
         container.stop()
     }
 
@@ -68,6 +72,60 @@ class BulkElasticsearchServiceSpec extends Specification {
     def "BulkCreate"() {
     }
 
+    def "BulkIndex"() {
+        given:
+        var indexName = IndexUtils.getIndexName(MappingTest.class)
+        var docs = (1..3).collect { MappingTest.newBuilder().setId(String.valueOf(it)).setStringValue("test" + it).build() }
+
+        when:
+        var response = service.bulkIndex(indexName, docs, { it.getId() })
+        service.refresh(new RefreshRequest.Builder().index(indexName).build())
+        var result = service.search(new RequestBuilder().buildRequest(indexName, SearchCriteria.newBuilder().build()), Map.class)
+
+        then:
+        !response.errors()
+        response.items()*.id() == ["1", "2", "3"]
+        result.hits().hits()*.source()*.get("string_value").toSorted() == ["test1", "test2", "test3"]
+    }
+
+    def "BulkIndexEncoded"() {
+        given:
+        var indexName = IndexUtils.getIndexName(MappingTest.class)
+        var json = '{"string_value":"encoded"}'.getBytes("UTF-8")
+        var docs = ["1": ByteBuffer.wrap(json), "2": ByteBuffer.allocateDirect(json.length).put(json).flip()]
+
+        when:
+        var response = service.bulkIndexEncoded(indexName, docs)
+
+        then:
+        !response.errors()
+        response.items().size() == 2
+    }
+
+    @Unroll
+    def "BulkIndex and search with #format transport"() {
+        given:
+        var binaryService = new BulkElasticsearchService(client, 1, 1, 1)
+        binaryService.setTransportFormat(format)
+        var indexName = IndexUtils.getIndexName(MappingTest.class)
+        var docs = (1..3).collect { MappingTest.newBuilder().setId(String.valueOf(it)).setDoubleValue(it + 0.5).build() }
+
+        when:
+        var response = binaryService.bulkIndex(indexName, docs, { it.getId() })
+        binaryService.refresh(new RefreshRequest.Builder().index(indexName).build())
+        var result = binaryService.search(new RequestBuilder().buildRequest(indexName, SearchCriteria.newBuilder().build()), MappingTest.class)
+
+        then:
+        !response.errors()
+        result.hits().hits()*.source().toSorted { it.getId() } == docs
+
+        cleanup:
+        binaryService.close()
+
+        where:
+        format << ["smile", "cbor"]
+    }
+
     def "getBulkProcessor"() {
         given:
         var testProto = MappingTest.newBuilder().setStringValue("test").build()
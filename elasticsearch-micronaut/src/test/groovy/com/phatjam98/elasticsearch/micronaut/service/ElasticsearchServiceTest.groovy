@@ -13,16 +13,37 @@ import co.elastic.clients.elasticsearch.indices.update_aliases.Action
 import co.elastic.clients.json.jackson.JacksonJsonpMapper
 import co.elastic.clients.transport.ElasticsearchTransport
 import co.elastic.clients.transport.rest_client.RestClientTransport
+import com.fasterxml.jackson.databind.DeserializationFeature
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.google.common.collect.MapDifference
 import com.google.common.collect.Maps
 import com.google.protobuf.util.JsonFormat
+import com.phatjam98.core.common.proto.FlatStructProtos
+import com.phatjam98.core.common.proto.GeoBufProtos
 import com.phatjam98.elasticsearch.utils.IndexUtils
+import com.phatjam98.elasticsearch.utils.ProtoJacksonModule
 import com.phatjam98.elasticsearch.utils.ResponseUtils
+import com.phatjam98.geobuf.utils.GeobufUtils
 import com.phatjam98.helpers.TestLoggingHelpers
+import com.phatjam98.protos.service.protos.Aggregation
+import com.phatjam98.protos.service.protos.AggregationCriteria
+import com.phatjam98.protos.service.protos.CardinalityAggregation
+import com.phatjam98.protos.service.protos.CompositeAggregation
+import com.phatjam98.protos.service.protos.CompositeSource
+import com.phatjam98.protos.service.protos.FieldCondition
+import com.phatjam98.protos.service.protos.FieldSort
+import com.phatjam98.protos.service.protos.Pagination
+import com.phatjam98.protos.service.protos.SearchCondition
+import com.phatjam98.protos.service.protos.SearchCriteria
+import com.phatjam98.protos.service.protos.SearchOperationType
+import com.phatjam98.protos.service.protos.SortingCriteria
+import com.phatjam98.protos.service.protos.SortingOrder
+import com.phatjam98.protos.service.protos.StatsAggregation
+import com.phatjam98.protos.service.protos.TermsAggregation
 import com.thepublichealthco.protos.MappingTest
 import groovy.json.JsonSlurper
 import org.apache.http.HttpHost
+import org.elasticsearch.ElasticsearchException
 import org.elasticsearch.client.RestClient
 import org.testcontainers.elasticsearch.ElasticsearchContainer
 import spock.lang.Ignore
@@ -30,7 +51,9 @@ import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.time.Duration
 import java.time.Instant
+import java.util.concurrent.ExecutionException
 
 import static org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions
 
@@ -52,12 +75,13 @@ class ElasticsearchServiceTest extends Specification {
     void setupSpec() {
         container.start()
         restClient = RestClient.builder(HttpHost.create(container.getHttpHostAddress())).build()
-        ElasticsearchTransport transport = new RestClientTransport(restClient, new JacksonJsonpMapper())
+        ElasticsearchTransport transport = new RestClientTransport(restClient, ProtoJacksonModule.jsonpMapper())
         client = new ElasticsearchAsyncClient(transport)
         service = new ElasticsearchService(client)
     }
 
     void cleanupSpec() {
+        service.close()
         container.stop()
     }
 
@@ -88,7 +112,488 @@ class ElasticsearchServiceTest extends Specification {
         !service.indexExists(indexName)
     }
 
+    def "index Exists, Created, Deleted async"() {
+        given:
+        var indexName = IndexUtils.getIndexName(MappingTest)
+
+        when:
+        var created = service.createIndexAsync(indexName, IndexUtils.getTypeMapping(MappingTest))
+                .thenCompose { service.indexExistsAsync(indexName) }
+                .get()
+        var deleted = service.deleteIndexAsync(indexName)
+                .thenCompose { service.indexExistsAsync(indexName) }
+                .get()
+
+        then:
+        created
+        !deleted
+    }
+
+    def "Async failures complete the future exceptionally"() {
+        when:
+        service.deleteIndexAsync("missing_index").get()
+
+        then:
+        ExecutionException e = thrown()
+        e.getCause() != null
+    }
+
+    def "topology is cached from cluster health"() {
+        when:
+        var topology = service.topologyAsync().get()
+
+        then:
+        topology.isKnown()
+        topology.getDataNodes() == 1
+        topology.getReplicas() == 0
+        topology.getShards() == 3
+        service.topology().is(topology)
+    }
+
+    def "construction does not wait for the cluster"() {
+        given:
+        var unreachable = RestClient.builder(HttpHost.create("http://localhost:1")).build()
+        var unreachableClient = new ElasticsearchAsyncClient(new RestClientTransport(unreachable, new JacksonJsonpMapper()))
+
+        when:
+        var unreachableService = new ElasticsearchService(unreachableClient)
+
+        then:
+        !unreachableService.topology().isKnown()
+        unreachableService.topology().getReplicas() == 1
+
+        cleanup:
+        unreachable.close()
+    }
+
+    def "concurrent searches are coalesced into one _msearch"() {
+        given:
+        var indexName = IndexUtils.getIndexName(MappingTest)
+        service.createIndex(indexName, IndexUtils.getTypeMapping(MappingTest))
+        var coalescing = new ElasticsearchService(client)
+        coalescing.setSearchCoalescing(true, Duration.ofMillis(200), 10)
+
+        when:
+        var found = (1..4).collect { coalescing.searchAsync(new SearchRequest.Builder().index(indexName).build(), Map) }
+        var missing = coalescing.searchAsync(new SearchRequest.Builder().index("missing_index").build(), Map)
+        found*.get()
+        missing.get()
+
+        then:
+        ExecutionException e = thrown()
+        e.getCause() instanceof co.elastic.clients.elasticsearch._types.ElasticsearchException
+        found.every { it.get().hits() != null }
+        coalescing.getSearchCoalescingStats().getBatches() == 1
+        coalescing.getSearchCoalescingStats().getSearches() == 5
+
+        cleanup:
+        coalescing.close()
+        service.deleteIndex(indexName)
+    }
+
+    def "coalesced searches decode with the client's mapper"() {
+        given:
+        var indexName = IndexUtils.getIndexName(MappingTest)
+        service.createIndex(indexName, IndexUtils.getTypeMapping(MappingTest))
+        seedMappingTests(indexName, 1) { MappingTest.Builder doc, int i -> doc.setDoubleValue(1.5) }
+        var bigDecimals = new ObjectMapper().enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+        var bigDecimalClient = new ElasticsearchAsyncClient(new RestClientTransport(restClient, new JacksonJsonpMapper(bigDecimals)))
+        var coalescing = new ElasticsearchService(bigDecimalClient)
+        coalescing.setSearchCoalescing(true, Duration.ofMillis(50), 10)
+
+        when:
+        var response = coalescing.searchAsync(new SearchRequest.Builder().index(indexName).build(), Map).get()
+
+        then:
+        coalescing.getSearchCoalescingStats().getSearches() == 1
+        response.hits().hits()[0].source().double_value instanceof BigDecimal
+
+        cleanup:
+        coalescing.close()
+        service.deleteIndex(indexName)
+    }
+
+    def "get and multiGet decode documents by id"() {
+        given:
+        var indexName = IndexUtils.getIndexName(MappingTest)
+        service.createIndex(indexName, IndexUtils.getTypeMapping(MappingTest))
+        var docs = seedMappingTests(indexName, 3) { MappingTest.Builder doc, int i -> doc.setStringValue("doc" + i) }
+
+        var coalescing = new ElasticsearchService(client)
+        coalescing.setGetCoalescing(true, Duration.ZERO, 256)
+
+        when:
+        var single = service.get(indexName, "1", MappingTest)
+        var concurrent = ["1", "2", "3", "2", "4"].collect { coalescing.getAsync(indexName, it, MappingTest) }*.get()
+        var multi = service.multiGet(indexName, ["3", "4", "1"], MappingTest)
+
+        then:
+        single == docs[0]
+        concurrent == [docs[0], docs[1], docs[2], docs[1], null]
+        multi.keySet().toList() == ["3", "4", "1"]
+        multi["3"] == docs[2]
+        multi["4"] == null
+
+        cleanup:
+        coalescing.close()
+        service.deleteIndex(indexName)
+    }
+
+    def "geo_shape searches with the smile transport"() {
+        given:
+        var indexName = "geo_shape_smile"
+        service.createIndex(indexName, new TypeMapping.Builder()
+                .properties("area", Property.of { p -> p.geoShape { g -> g } })
+                .build())
+        service.create(indexName, "1", '{"area":{"type":"Point","coordinates":[-115.15,36.1]}}')
+        service.refresh(new RefreshRequest.Builder().index(indexName).build())
+        var smile = new ElasticsearchService(client)
+        smile.setTransportFormat("smile")
+        var polygon = GeoBufProtos.Data.parseFrom(new GeobufUtils('{"type":"Polygon","coordinates":[[[-115.3,36.15],[-115.3,36.05],[-115.0,36.05],[-115.0,36.15],[-115.3,36.15]]]}').getGeobuf())
+        var criteria = SearchCriteria.newBuilder()
+                .addSearchCondition(SearchCondition.newBuilder()
+                        .addFieldCondition(FieldCondition.newBuilder()
+                                .setOperation(SearchOperationType.GEO_INTERSECTS)
+                                .setField("area")
+                                .setValue(FlatStructProtos.FlatValue.newBuilder().setGeoValue(polygon))))
+                .build()
+
+        when:
+        var response = smile.search(indexName, criteria, Map)
+
+        then:
+        response.hits().hits()*.id() == ["1"]
+
+        cleanup:
+        smile.close()
+        service.deleteIndex(indexName)
+    }
+
+    def "search results are cached until the index is written to"() {
+        given:
+        var indexName = IndexUtils.getIndexName(MappingTest)
+        service.createIndex(indexName, IndexUtils.getTypeMapping(MappingTest))
+        var caching = new ElasticsearchService(client)
+        caching.setSearchCache(true, 1024 * 1024, Duration.ofMinutes(1))
+        var criteria = SearchCriteria.newBuilder().setPagination(Pagination.newBuilder().setSize(5)).build()
+
+        when:
+        var first = caching.search(indexName, criteria, MappingTest)
+        var second = caching.search(indexName, criteria, MappingTest)
+        caching.search(indexName, criteria, MappingTest, true)
+
+        then:
+        second.is(first)
+        caching.getSearchCacheStats().hitCount() == 1
+        caching.getSearchCacheStats().missCount() == 1
+
+        when:
+        caching.create(indexName, "1", '{"id":"1"}')
+        caching.refresh(new RefreshRequest.Builder().index(indexName).build())
+        var afterWrite = caching.search(indexName, criteria, MappingTest)
+
+        then:
+        !afterWrite.is(first)
+        afterWrite.hits().hits().size() == 1
+        caching.getSearchCacheStats().missCount() == 2
+
+        cleanup:
+        caching.close()
+        service.deleteIndex(indexName)
+    }
+
+    def "a search in flight during a write is not cached"() {
+        given:
+        var indexName = IndexUtils.getIndexName(MappingTest)
+        service.createIndex(indexName, IndexUtils.getTypeMapping(MappingTest))
+        var caching = new ElasticsearchService(client)
+        caching.setSearchCache(true, 1024 * 1024, Duration.ofMinutes(1))
+        // Holds the search back long enough for the write to land while it is in flight.
+        caching.setSearchCoalescing(true, Duration.ofMillis(500), 10)
+        var criteria = SearchCriteria.newBuilder().setPagination(Pagination.newBuilder().setSize(5)).build()
+
+        when:
+        var inFlight = caching.searchAsync(indexName, criteria, MappingTest, false)
+        caching.create(indexName, "1", '{"id":"1"}')
+        inFlight.get()
+        service.refresh(new RefreshRequest.Builder().index(indexName).build())
+        var afterWrite = caching.search(indexName, criteria, MappingTest)
+
+        then:
+        !afterWrite.is(inFlight.get())
+        afterWrite.hits().hits().size() == 1
+        caching.getSearchCacheStats().hitCount() == 0
+
+        cleanup:
+        caching.close()
+        service.deleteIndex(indexName)
+    }
+
+    def "searchStream pages through every hit"() {
+        given:
+        var indexName = IndexUtils.getIndexName(MappingTest)
+        service.createIndex(indexName, IndexUtils.getTypeMapping(MappingTest))
+        seedMappingTests(indexName, 25)
+        var criteria = SearchCriteria.newBuilder().setPagination(Pagination.newBuilder().setSize(10)).build()
+
+        when:
+        var all = service.searchStream(indexName, criteria, MappingTest).collectList().block()
+        var firstFew = service.searchStream(indexName, criteria, MappingTest).take(3).collectList().block()
+
+        then:
+        all*.getInt32Value().toSorted() == (1..25).toList()
+        firstFew.size() == 3
+
+        cleanup:
+        service.deleteIndex(indexName)
+    }
+
+    def "exportAll reads every slice"() {
+        given:
+        var indexName = IndexUtils.getIndexName(MappingTest)
+        service.createIndex(indexName, IndexUtils.getTypeMapping(MappingTest))
+        service.updateAliases(indexName, IndexUtils.getAlias(MappingTest), Action.Kind.Add)
+        seedMappingTests(indexName, 25)
+        var criteria = SearchCriteria.newBuilder().setPagination(Pagination.newBuilder().setSize(4)).build()
+
+        when:
+        var all = service.exportAll(MappingTest, criteria, 3).withCloseable { it.toList() }
+        var firstFew = service.exportAll(MappingTest, criteria, 3).withCloseable { it.limit(5).toList() }
+
+        then:
+        all*.getInt32Value().toSorted() == (1..25).toList()
+        firstFew.size() == 5
+
+        cleanup:
+        service.deleteIndex(indexName)
+    }
+
+    def "search_after pages share a managed point in time"() {
+        given:
+        var indexName = IndexUtils.getIndexName(MappingTest)
+        service.createIndex(indexName, IndexUtils.getTypeMapping(MappingTest))
+        seedMappingTests(indexName, 25)
+        var paging = new ElasticsearchService(client)
+        paging.setPointInTimeConfig(true, Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofMinutes(5), 1)
+        var criteria = SearchCriteria.newBuilder()
+                .addSortingCriteria(SortingCriteria.newBuilder().setFieldSort(
+                        FieldSort.newBuilder().setFieldName("int32_value").setOrder(SortingOrder.ASC)))
+                .setPagination(Pagination.newBuilder().setSize(10).setSearchAfter(true))
+                .build()
+
+        when:
+        List<Integer> values = []
+        var first = paging.search(indexName, criteria, MappingTest)
+        values.addAll(first.hits().hits()*.source()*.getInt32Value())
+        var rejected = paging.search(indexName, criteria, MappingTest)
+        var pagination = ResponseUtils.getPagination(criteria, first)
+
+        while (pagination.getCursor()) {
+            var next = criteria.toBuilder().setPagination(pagination).build()
+            var page = paging.search(indexName, next, MappingTest)
+            values.addAll(page.hits().hits()*.source()*.getInt32Value())
+            pagination = ResponseUtils.getPagination(next, page)
+        }
+
+        then:
+        rejected == null
+        values == (1..25).toList()
+        paging.getPointInTimeStats().getOpened() == 1
+        paging.getPointInTimeStats().getClosed() == 1
+        paging.getPointInTimeStats().getRejected() == 1
+        paging.getPointInTimeStats().getOpen() == 0
+
+        cleanup:
+        paging.close()
+        service.deleteIndex(indexName)
+    }
+
+    def "points in time are closed when a first page fails and when the service closes"() {
+        given:
+        var indexName = IndexUtils.getIndexName(MappingTest)
+        service.createIndex(indexName, IndexUtils.getTypeMapping(MappingTest))
+        seedMappingTests(indexName, 25)
+        var paging = new ElasticsearchService(client)
+        paging.setPointInTimeConfig(true, Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofMinutes(5), 1)
+        var criteria = { String sortField ->
+            SearchCriteria.newBuilder()
+                    .addSortingCriteria(SortingCriteria.newBuilder().setFieldSort(
+                            FieldSort.newBuilder().setFieldName(sortField).setOrder(SortingOrder.ASC)))
+                    .setPagination(Pagination.newBuilder().setSize(10).setSearchAfter(true))
+                    .build()
+        }
+
+        when:
+        var failed = paging.search(indexName, criteria("missing_field"), MappingTest)
+
+        then:
+        failed == null
+        paging.getPointInTimeStats().getOpened() == 1
+        paging.getPointInTimeStats().getClosed() == 1
+        paging.getPointInTimeStats().getOpen() == 0
+
+        when:
+        var first = paging.search(indexName, criteria("int32_value"), MappingTest)
+        var openBeforeClose = paging.getPointInTimeStats().getOpen()
+        paging.close()
+
+        then:
+        first.hits().hits().size() == 10
+        openBeforeClose == 1
+        paging.getPointInTimeStats().getClosed() == 2
+        paging.getPointInTimeStats().getOpen() == 0
+
+        cleanup:
+        service.deleteIndex(indexName)
+    }
+
+    def "streams and exports open their points in time through the manager"() {
+        given:
+        var indexName = IndexUtils.getIndexName(MappingTest)
+        service.createIndex(indexName, IndexUtils.getTypeMapping(MappingTest))
+        service.updateAliases(indexName, IndexUtils.getAlias(MappingTest), Action.Kind.Add)
+        seedMappingTests(indexName, 25)
+        var managed = new ElasticsearchService(client)
+        managed.setPointInTimeConfig(true, Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofMinutes(5), 1)
+        var criteria = SearchCriteria.newBuilder().setPagination(Pagination.newBuilder().setSize(10)).build()
+
+        when:
+        var streamed = managed.searchStream(indexName, criteria, MappingTest).collectList().block()
+        var exported = managed.exportAll(MappingTest, criteria, 2).withCloseable { it.toList() }
+
+        then:
+        streamed.size() == 25
+        exported.size() == 25
+        managed.getPointInTimeStats().getOpened() == 2
+        managed.getPointInTimeStats().getClosed() == 2
+        managed.getPointInTimeStats().getOpen() == 0
+
+        when:
+        var held = managed.exportAll(MappingTest, criteria, 2)
+        managed.searchStream(indexName, criteria, MappingTest).collectList().block()
+
+        then:
+        thrown(IllegalStateException)
+        managed.getPointInTimeStats().getRejected() == 1
+
+        cleanup:
+        held?.close()
+        managed.close()
+        service.deleteIndex(indexName)
+    }
+
+    def "aggregate computes aggregations and pages composites"() {
+        given:
+        var indexName = IndexUtils.getIndexName(MappingTest)
+        service.createIndex(indexName, IndexUtils.getTypeMapping(MappingTest))
+        seedMappingTests(indexName, 25) { MappingTest.Builder doc, int i ->
+            doc.setStringValue(i % 3 == 0 ? "fizz" : "other")
+        }
+        var criteria = AggregationCriteria.newBuilder()
+                .addAggregation(Aggregation.newBuilder().setName("by_string")
+                        .setTerms(TermsAggregation.newBuilder().setField("string_value"))
+                        .addSubAggregation(Aggregation.newBuilder().setName("values")
+                                .setStats(StatsAggregation.newBuilder().setField("int32_value"))))
+                .addAggregation(Aggregation.newBuilder().setName("distinct")
+                        .setCardinality(CardinalityAggregation.newBuilder().setField("int32_value")))
+                .addAggregation(Aggregation.newBuilder().setName("pages")
+                        .setComposite(CompositeAggregation.newBuilder().setSize(10)
+                                .addSource(CompositeSource.newBuilder().setName("value")
+                                        .setTerms(TermsAggregation.newBuilder().setField("int32_value")))))
+                .build()
+
+        when:
+        var response = service.aggregate(indexName, criteria)
+        var byString = response.getAggregationList().find { it.getName() == "by_string" }.getBuckets()
+        var fizz = byString.getBucketList().find { it.getKey() == "fizz" }
+        var pages = service.aggregatePages(indexName, criteria).collectList().block()
+
+        then:
+        response.getTotal() == 25
+        fizz.getDocCount() == 8
+        fizz.getSubAggregation(0).getStats().getSum() == 108
+        response.getAggregationList().find { it.getName() == "distinct" }.getCardinality() == 25
+        pages.size() == 3
+        pages.collectMany { page ->
+            page.getAggregationList().find { it.getName() == "pages" }.getBuckets().getBucketList()
+        }*.getCompositeKeyMap()*.get("value")*.toInteger() == (1..25).toList()
+
+        cleanup:
+        service.deleteIndex(indexName)
+    }
+
+    def "each service has its own query cache"() {
+        given:
+        var indexName = IndexUtils.getIndexName(MappingTest)
+        service.createIndex(indexName, IndexUtils.getTypeMapping(MappingTest))
+        var first = new ElasticsearchService(client)
+        var second = new ElasticsearchService(client)
+        first.setQueryCacheSize(10)
+        second.setQueryCacheSize(10)
+
+        when:
+        2.times { first.count(indexName, SearchCriteria.getDefaultInstance()) }
+
+        then:
+        first.getQueryCacheStats().hitCount() == 1
+        second.getQueryCacheStats().requestCount() == 0
+
+        cleanup:
+        first.close()
+        second.close()
+        service.deleteIndex(indexName)
+    }
+
+    def "count and exists skip fetching hits"() {
+        given:
+        var indexName = IndexUtils.getIndexName(MappingTest)
+        service.createIndex(indexName, IndexUtils.getTypeMapping(MappingTest))
+        var criteria = SearchCriteria.newBuilder().build()
+
+        expect:
+        service.count(indexName, criteria) == 0L
+        !service.exists(indexName, criteria)
+
+        when:
+        seedMappingTests(indexName, 3)
+
+        then:
+        service.count(indexName, criteria) == 3L
+        service.countAsync(indexName, criteria).get() == 3L
+        service.exists(indexName, criteria)
+        service.existsAsync(indexName, criteria).get()
+
+        cleanup:
+        service.deleteIndex(indexName)
+    }
+
     @Unroll
+    def "count and exists throw when interrupted"() {
+        given:
+        var indexName = IndexUtils.getIndexName(MappingTest)
+        service.createIndex(indexName, IndexUtils.getTypeMapping(MappingTest))
+
+        when:
+        Thread.currentThread().interrupt()
+        service.count(indexName, SearchCriteria.getDefaultInstance())
+
+        then:
+        thrown(ElasticsearchException)
+        Thread.interrupted()
+
+        when:
+        Thread.currentThread().interrupt()
+        service.exists(indexName, SearchCriteria.getDefaultInstance())
+
+        then:
+        thrown(ElasticsearchException)
+        Thread.interrupted()
+
+        cleanup:
+        Thread.interrupted()
+        service.deleteIndex(indexName)
+    }
+
     def "Create #userName"() {
         given:
         var indexName = IndexUtils.getIndexName(MappingTest)
@@ -297,6 +802,25 @@ class ElasticsearchServiceTest extends Specification {
         "v1"    | ["test_index_" + version] as List<String> | "test_index"
     }
 
+    def "cloneIndex freezes the source before cloning it"() {
+        given:
+        var sourceIndexName = "clone_source"
+        var targetIndexName = "clone_target"
+        service.createIndex(sourceIndexName, IndexUtils.getTypeMapping(MappingTest))
+        seedMappingTests(sourceIndexName, 3)
+
+        when:
+        var response = service.cloneIndex(targetIndexName, sourceIndexName)
+
+        then:
+        response.acknowledged()
+        service.indexExists(targetIndexName)
+
+        cleanup:
+        service.deleteIndex(targetIndexName)
+        service.deleteIndex(sourceIndexName)
+    }
+
     @Unroll
     def "bootstrapService #indexName"() {
         given:
@@ -314,7 +838,7 @@ class ElasticsearchServiceTest extends Specification {
 
         then:
         service.indexExists(indexName)
-        listAppender.list.get(0).toString().contains(aliasName + " exists: false")
+        listAppender.list.get(0).toString().contains("Indices found for aliases [" + aliasName + "]: []")
         listAppender.list.get(1).toString().contains(indexName + " created: true")
         listAppender.list.get(2).toString().contains("Index created for " + indexName)
         listAppender.list.get(3).toString().contains("Mappings for index " + indexName + " set as:")
@@ -325,7 +849,8 @@ class ElasticsearchServiceTest extends Specification {
         service.bootstrapService(MappingTest)
 
         then:
-        listAppender.list.get(6).toString().contains("Index " + aliasName + " exists: true")
+        listAppender.list.get(6).toString().contains("Indices found for aliases [" + aliasName + "]: [" + indexName + "]")
+        listAppender.list.get(7).toString().contains("Index exists for " + indexName + ", and mappings match.")
 
         cleanup:
         service.deleteIndex(indexName)
@@ -354,6 +879,29 @@ class ElasticsearchServiceTest extends Specification {
         MappingTest | IndexUtils.getIndexName(resource) | IndexUtils.getAlias(resource) | IndexUtils.getTypeMapping(resource) | "[INFO] Painless script found"
     }
 
+    def "bootstrap reindexes and swaps the alias when mappings cannot be updated"() {
+        given:
+        var indexName = IndexUtils.getIndexName(MappingTest)
+        var aliasName = IndexUtils.getAlias(MappingTest)
+        var legacyIndexName = aliasName + "_legacy"
+        service.createIndex(legacyIndexName, new TypeMapping.Builder()
+                .properties("string_value", Property.of { p -> p.long_ { l -> l } })
+                .build())
+        service.updateAliases(legacyIndexName, aliasName, Action.Kind.Add)
+        seedMappingTests(legacyIndexName, 3) { MappingTest.Builder doc, int i -> doc.setStringValue(String.valueOf(i)) }
+
+        when:
+        service.bootstrapService(MappingTest)
+
+        then:
+        service.indexNamesFromAlias(aliasName) == [indexName]
+        service.count(aliasName, SearchCriteria.getDefaultInstance()) == 3L
+
+        cleanup:
+        service.deleteIndex(indexName)
+        service.deleteIndex(legacyIndexName)
+    }
+
     @Ignore("Revisit this to re-enable simple mapping updates without a reindex")
     @Unroll
     def "bootstrap failed mappings #indexName"() {
@@ -400,4 +948,20 @@ class ElasticsearchServiceTest extends Specification {
         resource    | indexName                         | aliasName                     | mappings
         MappingTest | IndexUtils.getIndexName(resource) | IndexUtils.getAlias(resource) | IndexUtils.getTypeMapping(resource)
     }
+
+    /**
+     * Indexes n MappingTest documents with ids and int32_value 1..n, lets the customizer set
+     * more fields on each builder, and refreshes the index so they are searchable.
+     */
+    private List<MappingTest> seedMappingTests(String indexName, int n, Closure customizer = { builder, i -> }) {
+        var docs = (1..n).collect {
+            var builder = MappingTest.newBuilder().setId(String.valueOf(it)).setInt32Value(it)
+            customizer.call(builder, it)
+            builder.build()
+        }
+        docs.each { service.create(indexName, it.getId(), JsonFormat.printer().preservingProtoFieldNames().print(it)) }
+        service.refresh(new RefreshRequest.Builder().index(indexName).build())
+
+        return docs
+    }
 }
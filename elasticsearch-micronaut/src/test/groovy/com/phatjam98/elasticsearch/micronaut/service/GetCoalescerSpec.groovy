@@ -0,0 +1,51 @@
+package com.phatjam98.elasticsearch.micronaut.service
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient
+import co.elastic.clients.elasticsearch.core.MgetResponse
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem
+import com.thepublichealthco.protos.MappingTest
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
+class GetCoalescerSpec extends Specification {
+
+    def "a failed id only fails the gets of that id"() {
+        given:
+        var doc = MappingTest.newBuilder().setId("1").build()
+        var response = MgetResponse.of { b ->
+            b.docs([
+                    MultiGetResponseItem.of { i -> i.result { r -> r.index("idx").id("1").found(true).source(doc) } },
+                    MultiGetResponseItem.of { i ->
+                        i.failure { f -> f.index("idx").id("2").error { e -> e.type("shard_failure").reason("boom") } }
+                    },
+                    MultiGetResponseItem.of { i -> i.result { r -> r.index("idx").id("3").found(false) } }
+            ])
+        }
+        var sent = new CountDownLatch(1)
+        var client = Mock(ElasticsearchAsyncClient)
+        client.mget(_, MappingTest) >> {
+            sent.countDown()
+            CompletableFuture.completedFuture(response)
+        }
+        var coalescer = new GetCoalescer(client, Duration.ofMillis(100), 10)
+
+        when:
+        var futures = ["1", "2", "3"].collect { coalescer.get("idx", it, MappingTest) }
+        sent.await(5, TimeUnit.SECONDS)
+        futures[1].get()
+
+        then:
+        ExecutionException e = thrown()
+        e.getCause() instanceof IllegalStateException
+        futures[0].get() == doc
+        futures[2].get() == null
+
+        cleanup:
+        coalescer.shutdown()
+    }
+}
@@ -0,0 +1,488 @@
+package com.phatjam98.elasticsearch.utils;
+
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Buckets;
+import co.elastic.clients.elasticsearch._types.aggregations.CalendarInterval;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeAggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeAggregationSource;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.GeoTileGridBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.MultiBucketBase;
+import co.elastic.clients.elasticsearch._types.aggregations.RangeBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.StatsAggregate;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.phatjam98.protos.service.protos.Aggregation;
+import com.phatjam98.protos.service.protos.AggregationCriteria;
+import com.phatjam98.protos.service.protos.AggregationRange;
+import com.phatjam98.protos.service.protos.AggregationResponse;
+import com.phatjam98.protos.service.protos.AggregationResult;
+import com.phatjam98.protos.service.protos.Bucket;
+import com.phatjam98.protos.service.protos.BucketResult;
+import com.phatjam98.protos.service.protos.CompositeAggregation;
+import com.phatjam98.protos.service.protos.CompositeSource;
+import com.phatjam98.protos.service.protos.DateHistogramAggregation;
+import com.phatjam98.protos.service.protos.GeoTileGridAggregation;
+import com.phatjam98.protos.service.protos.HistogramAggregation;
+import com.phatjam98.protos.service.protos.StatsResult;
+import com.phatjam98.protos.service.protos.TermsAggregation;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Utility to translate {@link AggregationCriteria} into Elasticsearch aggregations and their
+ * results back into an {@link AggregationResponse}.  Results are read from the client's typed
+ * aggregates by the type of the requested {@link Aggregation}, so the same decoding serves root
+ * and sub aggregations.
+ */
+public class AggregationUtils {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final String COMPOSITE_KEY_SEPARATOR = "|";
+
+  /**
+   * Elasticsearch's page size of composite aggregations that do not set one.
+   */
+  static final int DEFAULT_COMPOSITE_SIZE = 10;
+
+  private AggregationUtils() {
+  }
+
+  /**
+   * Builds the Elasticsearch aggregations, keyed by name, for the {@link Aggregation}s.
+   *
+   * @param aggregations Aggregations from AggregationCriteria
+   * @return Map of aggregation name to Elasticsearch Aggregation
+   * @throws IllegalArgumentException if an Aggregation has no type
+   */
+  public static Map<String, co.elastic.clients.elasticsearch._types.aggregations.Aggregation>
+      buildAggregations(List<Aggregation> aggregations) {
+    Map<String, co.elastic.clients.elasticsearch._types.aggregations.Aggregation> built =
+        new LinkedHashMap<>();
+
+    for (Aggregation aggregation : aggregations) {
+      built.put(aggregation.getName(), buildAggregation(aggregation));
+    }
+
+    return built;
+  }
+
+  private static co.elastic.clients.elasticsearch._types.aggregations.Aggregation
+      buildAggregation(Aggregation aggregation) {
+    var builder = new co.elastic.clients.elasticsearch._types.aggregations.Aggregation.Builder();
+    co.elastic.clients.elasticsearch._types.aggregations.Aggregation.Builder.ContainerBuilder
+        container;
+
+    switch (aggregation.getAggregationTypeCase()) {
+      case TERMS:
+        container = builder.terms(t -> terms(t, aggregation.getTerms()));
+        break;
+      case HISTOGRAM:
+        container = builder.histogram(h -> histogram(h, aggregation.getHistogram()));
+        break;
+      case DATE_HISTOGRAM:
+        container = builder.dateHistogram(d -> dateHistogram(d, aggregation.getDateHistogram()));
+        break;
+      case RANGE:
+        container = builder.range(r -> r.field(aggregation.getRange().getField())
+            .ranges(ranges(aggregation.getRange().getRangeList())));
+        break;
+      case STATS:
+        container = builder.stats(s -> s.field(aggregation.getStats().getField()));
+        break;
+      case CARDINALITY:
+        var cardinality = aggregation.getCardinality();
+        container = builder.cardinality(c -> {
+          c.field(cardinality.getField());
+          return cardinality.getPrecisionThreshold() > 0
+              ? c.precisionThreshold(cardinality.getPrecisionThreshold()) : c;
+        });
+        break;
+      case GEOTILE_GRID:
+        container = builder.geotileGrid(g -> geotileGrid(g, aggregation.getGeotileGrid()));
+        break;
+      case COMPOSITE:
+        container = builder.composite(c -> composite(c, aggregation.getComposite()));
+        break;
+      default:
+        throw new IllegalArgumentException("Aggregation " + aggregation.getName()
+            + " has no aggregation type");
+    }
+
+    if (aggregation.getSubAggregationCount() > 0) {
+      container.aggregations(buildAggregations(aggregation.getSubAggregationList()));
+    }
+
+    return container.build();
+  }
+
+  private static co.elastic.clients.elasticsearch._types.aggregations.TermsAggregation.Builder
+      terms(co.elastic.clients.elasticsearch._types.aggregations.TermsAggregation.Builder builder,
+            TermsAggregation terms) {
+    builder.field(terms.getField());
+
+    if (terms.getSize() > 0) {
+      builder.size(terms.getSize());
+    }
+
+    if (terms.getMinDocCount() > 0) {
+      builder.minDocCount((int) terms.getMinDocCount());
+    }
+
+    return builder;
+  }
+
+  private static co.elastic.clients.elasticsearch._types.aggregations.HistogramAggregation.Builder
+      histogram(
+          co.elastic.clients.elasticsearch._types.aggregations.HistogramAggregation.Builder builder,
+          HistogramAggregation histogram) {
+    builder.field(histogram.getField()).interval(histogram.getInterval());
+
+    if (histogram.getOffset() != 0) {
+      builder.offset(histogram.getOffset());
+    }
+
+    if (histogram.getMinDocCount() > 0) {
+      builder.minDocCount((int) histogram.getMinDocCount());
+    }
+
+    return builder;
+  }
+
+  private static
+      co.elastic.clients.elasticsearch._types.aggregations.DateHistogramAggregation.Builder
+      dateHistogram(
+          co.elastic.clients.elasticsearch._types.aggregations.DateHistogramAggregation.Builder
+              builder, DateHistogramAggregation dateHistogram) {
+    builder.field(dateHistogram.getField());
+
+    if (!dateHistogram.getCalendarInterval().isEmpty()) {
+      builder.calendarInterval(
+          CalendarInterval._DESERIALIZER.parse(dateHistogram.getCalendarInterval()));
+    } else {
+      builder.fixedInterval(t -> t.time(dateHistogram.getFixedInterval()));
+    }
+
+    if (!dateHistogram.getTimeZone().isEmpty()) {
+      builder.timeZone(dateHistogram.getTimeZone());
+    }
+
+    if (dateHistogram.getMinDocCount() > 0) {
+      builder.minDocCount((int) dateHistogram.getMinDocCount());
+    }
+
+    return builder;
+  }
+
+  private static List<co.elastic.clients.elasticsearch._types.aggregations.AggregationRange>
+      ranges(List<AggregationRange> ranges) {
+    List<co.elastic.clients.elasticsearch._types.aggregations.AggregationRange> built =
+        new ArrayList<>();
+
+    for (AggregationRange range : ranges) {
+      built.add(co.elastic.clients.elasticsearch._types.aggregations.AggregationRange.of(r -> {
+        if (!range.getKey().isEmpty()) {
+          r.key(range.getKey());
+        }
+
+        if (range.hasFrom()) {
+          r.from(String.valueOf(range.getFrom()));
+        }
+
+        if (range.hasTo()) {
+          r.to(String.valueOf(range.getTo()));
+        }
+
+        return r;
+      }));
+    }
+
+    return built;
+  }
+
+  private static co.elastic.clients.elasticsearch._types.aggregations.GeoTileGridAggregation.Builder
+      geotileGrid(
+          co.elastic.clients.elasticsearch._types.aggregations.GeoTileGridAggregation.Builder
+              builder, GeoTileGridAggregation geotileGrid) {
+    builder.field(geotileGrid.getField()).precision(geotileGrid.getPrecision());
+
+    if (geotileGrid.getSize() > 0) {
+      builder.size(geotileGrid.getSize());
+    }
+
+    return builder;
+  }
+
+  private static co.elastic.clients.elasticsearch._types.aggregations.CompositeAggregation.Builder
+      composite(
+          co.elastic.clients.elasticsearch._types.aggregations.CompositeAggregation.Builder builder,
+          CompositeAggregation composite) {
+    List<Map<String, CompositeAggregationSource>> sources = new ArrayList<>();
+
+    for (CompositeSource source : composite.getSourceList()) {
+      sources.add(Map.of(source.getName(), compositeSource(source)));
+    }
+
+    builder.sources(sources);
+
+    if (composite.getSize() > 0) {
+      builder.size(composite.getSize());
+    }
+
+    if (!composite.getAfter().isEmpty()) {
+      builder.after(decodeAfterKey(composite.getAfter()));
+    }
+
+    return builder;
+  }
+
+  private static CompositeAggregationSource compositeSource(CompositeSource source) {
+    switch (source.getSourceTypeCase()) {
+      case TERMS:
+        return CompositeAggregationSource.of(s -> s.terms(t -> terms(t, source.getTerms())));
+      case HISTOGRAM:
+        return CompositeAggregationSource.of(s -> s.histogram(
+            h -> histogram(h, source.getHistogram())));
+      case DATE_HISTOGRAM:
+        return CompositeAggregationSource.of(s -> s.dateHistogram(
+            d -> dateHistogram(d, source.getDateHistogram())));
+      case GEOTILE_GRID:
+        return CompositeAggregationSource.of(s -> s.geotileGrid(
+            g -> geotileGrid(g, source.getGeotileGrid())));
+      default:
+        throw new IllegalArgumentException("Composite source " + source.getName()
+            + " has no source type");
+    }
+  }
+
+  /**
+   * Decodes the aggregations of a {@code size: 0} search built from the
+   * {@link AggregationCriteria}.  Aggregations missing from the response are left out.
+   *
+   * @param criteria AggregationCriteria the search was built from
+   * @param response SearchResponse
+   * @return AggregationResponse
+   */
+  public static AggregationResponse getAggregationResponse(AggregationCriteria criteria,
+                                                           SearchResponse<?> response) {
+    var builder = AggregationResponse.newBuilder();
+    var totalHits = response.hits().total();
+
+    if (totalHits != null) {
+      builder.setTotal(totalHits.value());
+    }
+
+    for (Aggregation aggregation : criteria.getAggregationList()) {
+      Aggregate aggregate = response.aggregations().get(aggregation.getName());
+
+      if (aggregate != null) {
+        builder.addAggregation(decode(aggregation, aggregate));
+      }
+    }
+
+    return builder.build();
+  }
+
+  /**
+   * Builds the criteria for the next page of the composite aggregations in the response.  Only
+   * composite aggregations with a full page, so possibly more buckets, are kept, resumed after
+   * their after_key; the other aggregations were complete on the first page.
+   *
+   * @param criteria AggregationCriteria of the page
+   * @param response AggregationResponse of the page
+   * @return AggregationCriteria of the next page, or null when every composite aggregation is done
+   */
+  public static AggregationCriteria nextPage(AggregationCriteria criteria,
+                                             AggregationResponse response) {
+    var next = criteria.toBuilder().clearAggregation();
+    Map<String, AggregationResult> results = new LinkedHashMap<>();
+    response.getAggregationList().forEach(result -> results.put(result.getName(), result));
+
+    for (Aggregation aggregation : criteria.getAggregationList()) {
+      var result = results.get(aggregation.getName());
+
+      if (!aggregation.hasComposite() || result == null || !result.hasBuckets()) {
+        continue;
+      }
+
+      var composite = aggregation.getComposite();
+      var buckets = result.getBuckets();
+      int size = composite.getSize() > 0 ? composite.getSize() : DEFAULT_COMPOSITE_SIZE;
+
+      if (buckets.getBucketCount() >= size && !buckets.getAfterKey().isEmpty()) {
+        next.addAggregation(aggregation.toBuilder()
+            .setComposite(composite.toBuilder().setAfter(buckets.getAfterKey())));
+      }
+    }
+
+    return next.getAggregationCount() == 0 ? null : next.build();
+  }
+
+  private static AggregationResult decode(Aggregation aggregation, Aggregate aggregate) {
+    var result = AggregationResult.newBuilder().setName(aggregation.getName());
+
+    switch (aggregation.getAggregationTypeCase()) {
+      case STATS:
+        result.setStats(decodeStats(aggregate.stats()));
+        break;
+      case CARDINALITY:
+        result.setCardinality(aggregate.cardinality().value());
+        break;
+      default:
+        result.setBuckets(decodeBuckets(aggregation, aggregate));
+        break;
+    }
+
+    return result.build();
+  }
+
+  /**
+   * Elasticsearch sends null min, max and avg when no document had a value, so they are left unset
+   * rather than read as 0.
+   */
+  private static StatsResult decodeStats(StatsAggregate stats) {
+    var result = StatsResult.newBuilder().setCount(stats.count()).setSum(stats.sum());
+
+    if (stats.count() > 0) {
+      result.setMin(stats.min()).setMax(stats.max()).setAvg(stats.avg());
+    }
+
+    return result.build();
+  }
+
+  private static BucketResult decodeBuckets(Aggregation aggregation, Aggregate aggregate) {
+    var result = BucketResult.newBuilder();
+
+    switch (aggregate._kind()) {
+      case Sterms:
+        addBuckets(result, aggregation, aggregate.sterms().buckets(),
+            bucket -> key(bucket.keyAsString(), bucket.key()));
+        break;
+      case Lterms:
+        addBuckets(result, aggregation, aggregate.lterms().buckets(),
+            bucket -> key(bucket.keyAsString(), bucket.key()));
+        break;
+      case Dterms:
+        addBuckets(result, aggregation, aggregate.dterms().buckets(),
+            bucket -> key(bucket.keyAsString(), bucket.key()));
+        break;
+      case Umterms:
+        // Terms of a field no index maps have no buckets.
+        break;
+      case Histogram:
+        addBuckets(result, aggregation, aggregate.histogram().buckets(),
+            bucket -> key(bucket.keyAsString(), bucket.key()));
+        break;
+      case DateHistogram:
+        addBuckets(result, aggregation, aggregate.dateHistogram().buckets(),
+            bucket -> key(bucket.keyAsString(), bucket.key()));
+        break;
+      case Range:
+        addBuckets(result, aggregation, aggregate.range().buckets(), RangeBucket::key);
+        break;
+      case DateRange:
+        // A range aggregation on a date field comes back as a date_range.
+        addBuckets(result, aggregation, aggregate.dateRange().buckets(), RangeBucket::key);
+        break;
+      case GeotileGrid:
+        addBuckets(result, aggregation, aggregate.geotileGrid().buckets(),
+            GeoTileGridBucket::key);
+        break;
+      case Composite:
+        decodeComposite(result, aggregation, aggregate.composite());
+        break;
+      default:
+        throw new IllegalArgumentException("Aggregation " + aggregation.getName()
+            + " returned unsupported buckets: " + aggregate._kind());
+    }
+
+    return result.build();
+  }
+
+  private static <B extends MultiBucketBase> void addBuckets(BucketResult.Builder result,
+                                                             Aggregation aggregation,
+                                                             Buckets<B> buckets,
+                                                             Function<B, String> key) {
+    for (B bucket : bucketList(buckets)) {
+      result.addBucket(decodeBucket(aggregation, bucket).setKey(key.apply(bucket)));
+    }
+  }
+
+  private static void decodeComposite(BucketResult.Builder result, Aggregation aggregation,
+                                      CompositeAggregate composite) {
+    for (CompositeBucket bucket : bucketList(composite.buckets())) {
+      var decoded = decodeBucket(aggregation, bucket);
+      List<String> values = new ArrayList<>();
+
+      bucket.key().forEach((source, value) -> {
+        decoded.putCompositeKey(source, text(value));
+        values.add(text(value));
+      });
+
+      result.addBucket(decoded.setKey(String.join(COMPOSITE_KEY_SEPARATOR, values)));
+    }
+
+    if (composite.afterKey() != null && !composite.afterKey().isEmpty()) {
+      result.setAfterKey(encodeAfterKey(composite.afterKey()));
+    }
+  }
+
+  private static Bucket.Builder decodeBucket(Aggregation aggregation, MultiBucketBase bucket) {
+    var decoded = Bucket.newBuilder().setDocCount(bucket.docCount());
+
+    for (Aggregation sub : aggregation.getSubAggregationList()) {
+      Aggregate subAggregate = bucket.aggregations().get(sub.getName());
+
+      if (subAggregate != null) {
+        decoded.addSubAggregation(decode(sub, subAggregate));
+      }
+    }
+
+    return decoded;
+  }
+
+  private static <B> List<B> bucketList(Buckets<B> buckets) {
+    return buckets.isArray() ? buckets.array() : new ArrayList<>(buckets.keyed().values());
+  }
+
+  private static String key(String keyAsString, Object key) {
+    return keyAsString != null ? keyAsString : String.valueOf(key);
+  }
+
+  private static String text(JsonData data) {
+    JsonValue value = data.toJson();
+
+    return value instanceof JsonString ? ((JsonString) value).getString() : value.toString();
+  }
+
+  private static String encodeAfterKey(Map<String, JsonData> afterKey) {
+    Map<String, String> values = new LinkedHashMap<>();
+    afterKey.forEach((source, value) -> values.put(source, text(value)));
+
+    try {
+      return Base64.getUrlEncoder().withoutPadding()
+          .encodeToString(MAPPER.writeValueAsBytes(values));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, String> decodeAfterKey(String afterKey) {
+    try {
+      return MAPPER.readValue(new String(Base64.getUrlDecoder().decode(afterKey),
+          StandardCharsets.UTF_8), Map.class);
+    } catch (IOException | IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid composite after key: " + afterKey, e);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package com.phatjam98.elasticsearch.utils;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.phatjam98.protos.service.protos.PageCursor;
+import com.phatjam98.protos.service.protos.Pagination;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Utility to encode and decode the opaque {@link Pagination} cursors used for {@code search_after}
+ * pagination.  A cursor holds the PIT id, when there is one, and the sort values of the last hit
+ * of the previous page, so every page costs the same however deep it is.  Cursors that are not
+ * {@code search_after} cursors are PIT ids, as returned by earlier versions.
+ */
+public class CursorUtils {
+  static final String PREFIX = "sa1.";
+
+  private CursorUtils() {
+  }
+
+  /**
+   * Whether the {@link Pagination} pages with {@code search_after}, either because it asks to or
+   * because its cursor came from a {@code search_after} page.
+   *
+   * @param pagination Pagination
+   * @return true for search_after pagination
+   */
+  public static boolean isSearchAfter(Pagination pagination) {
+    return pagination.getSearchAfter() || isSearchAfterCursor(pagination.getCursor());
+  }
+
+  public static boolean isSearchAfterCursor(String cursor) {
+    return cursor.startsWith(PREFIX);
+  }
+
+  /**
+   * The PIT id of the {@link Pagination}, whether its cursor is a PIT id or a
+   * {@code search_after} cursor.
+   *
+   * @param pagination Pagination
+   * @return String PIT id, or empty if the pagination does not use a PIT
+   */
+  public static String getPitId(Pagination pagination) {
+    var cursor = pagination.getCursor();
+
+    return isSearchAfterCursor(cursor) ? decode(cursor).getPitId() : cursor;
+  }
+
+  /**
+   * Encodes a {@code search_after} cursor.
+   *
+   * @param pitId      String PIT id, or null or empty without a PIT
+   * @param sortValues sort values of the last hit of the page
+   * @return String cursor
+   */
+  public static String encode(String pitId, List<String> sortValues) {
+    var pageCursor = PageCursor.newBuilder().addAllSearchAfter(sortValues);
+
+    if (pitId != null) {
+      pageCursor.setPitId(pitId);
+    }
+
+    return PREFIX + Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(pageCursor.build().toByteArray());
+  }
+
+  /**
+   * Decodes a {@code search_after} cursor.
+   *
+   * @param cursor String cursor from {@link #encode(String, List)}
+   * @return PageCursor
+   * @throws IllegalArgumentException if the cursor is not a valid search_after cursor
+   */
+  public static PageCursor decode(String cursor) {
+    if (!isSearchAfterCursor(cursor)) {
+      throw new IllegalArgumentException("Not a search_after cursor: " + cursor);
+    }
+
+    try {
+      return PageCursor.parseFrom(Base64.getUrlDecoder().decode(cursor.substring(PREFIX.length())));
+    } catch (InvalidProtocolBufferException | IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid search_after cursor: " + cursor, e);
+    }
+  }
+}
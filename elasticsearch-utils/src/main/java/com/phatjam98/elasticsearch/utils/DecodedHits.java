@@ -0,0 +1,35 @@
+package com.phatjam98.elasticsearch.utils;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of {@link ResponseUtils#decodeHits}: one builder per hit, in hit order, along with how
+ * long decoding took and whether it ran in parallel.
+ *
+ * @param <T> Type of Protobuf Builder built from the Hits
+ */
+public final class DecodedHits<T> {
+  private final List<T> builders;
+  private final Duration decodeTime;
+  private final boolean parallel;
+
+  DecodedHits(List<T> builders, Duration decodeTime, boolean parallel) {
+    this.builders = Collections.unmodifiableList(builders);
+    this.decodeTime = decodeTime;
+    this.parallel = parallel;
+  }
+
+  public List<T> getBuilders() {
+    return builders;
+  }
+
+  public Duration getDecodeTime() {
+    return decodeTime;
+  }
+
+  public boolean isParallel() {
+    return parallel;
+  }
+}
@@ -0,0 +1,295 @@
+package com.phatjam98.elasticsearch.utils;
+
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.JsonpSerializable;
+import co.elastic.clients.json.jackson.JacksonJsonpGenerator;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.protobuf.ByteString;
+import com.phatjam98.core.common.proto.GeoBufProtos;
+import com.phatjam98.geobuf.utils.GeobufUtils;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Writes {@link GeoBufProtos.Data} geometries as GeoJSON straight to a Jackson
+ * {@link JsonGenerator}, decoding the delta-encoded geobuf coordinates as they are written instead
+ * of building a GeoJSON String and parsing it back.  Features and feature collections, which
+ * Elasticsearch geo_shape fields do not accept, fall back to {@link GeobufUtils}.
+ *
+ * <p>Query shapes are usually the same few boundaries over and over, so {@link #shape} keeps a
+ * bounded cache of encoded shapes keyed by their geobuf bytes.
+ */
+public final class GeoJsonEncoder {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+  private static final int DEFAULT_DIMENSIONS = 2;
+  private static final long MAX_CACHE_WEIGHT = 32L * 1024 * 1024;
+
+  private static final String[] TYPE_NAMES = {
+      "Point", "MultiPoint", "LineString", "MultiLineString", "Polygon", "MultiPolygon",
+      "GeometryCollection"
+  };
+
+  private static final Cache<ByteString, GeoJsonShape> SHAPES = CacheBuilder.newBuilder()
+      .maximumWeight(MAX_CACHE_WEIGHT)
+      .weigher((ByteString key, GeoJsonShape shape) -> key.size() + 2 * shape.toJson().length())
+      .build();
+
+  private final JsonGenerator generator;
+  private final int dimensions;
+  private final double scale;
+  private final long[] point;
+  private final double[] first;
+
+  private GeoJsonEncoder(GeoBufProtos.Data data, JsonGenerator generator) {
+    this.generator = generator;
+    this.dimensions = data.getDimensions() > 0 ? data.getDimensions() : DEFAULT_DIMENSIONS;
+    this.scale = Math.pow(10, data.getPrecision());
+    this.point = new long[dimensions];
+    this.first = new double[dimensions];
+  }
+
+  /**
+   * Writes the GeoJSON for the given geobuf data to the generator as a single JSON value.
+   *
+   * @param data      GeoBufProtos.Data
+   * @param generator JsonGenerator to write to
+   * @throws IOException JSON generation error
+   */
+  public static void write(GeoBufProtos.Data data, JsonGenerator generator) throws IOException {
+    if (data.getDataTypeCase() == GeoBufProtos.Data.DataTypeCase.GEOMETRY) {
+      new GeoJsonEncoder(data, generator).writeGeometry(data.getGeometry());
+    } else {
+      try (JsonParser parser = JSON_FACTORY.createParser(new GeobufUtils(data).getGeoJson())) {
+        parser.nextToken();
+        generator.copyCurrentStructure(parser);
+      }
+    }
+  }
+
+  /**
+   * Encodes the given geobuf data as a GeoJSON String.
+   *
+   * @param data GeoBufProtos.Data
+   * @return GeoJSON
+   */
+  public static String toGeoJson(GeoBufProtos.Data data) {
+    StringWriter writer = new StringWriter();
+
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+      write(data, generator);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return writer.toString();
+  }
+
+  /**
+   * Returns the encoded shape for the given geobuf data, encoding it only if the same shape has
+   * not been seen recently.  The result can be used anywhere the client accepts {@link JsonData}.
+   *
+   * @param data GeoBufProtos.Data
+   * @return GeoJsonShape
+   */
+  public static GeoJsonShape shape(GeoBufProtos.Data data) {
+    try {
+      return SHAPES.get(data.toByteString(), () -> new GeoJsonShape(toGeoJson(data)));
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Error encoding geobuf data as GeoJSON", e.getCause());
+    }
+  }
+
+  private void writeGeometry(GeoBufProtos.Data.Geometry geometry) throws IOException {
+    GeoBufProtos.Data.Geometry.Type type = geometry.getType();
+    generator.writeStartObject();
+    generator.writeStringField("type", TYPE_NAMES[type.getNumber()]);
+
+    if (type == GeoBufProtos.Data.Geometry.Type.GEOMETRYCOLLECTION) {
+      generator.writeFieldName("geometries");
+      generator.writeStartArray();
+
+      for (GeoBufProtos.Data.Geometry child : geometry.getGeometriesList()) {
+        writeGeometry(child);
+      }
+
+      generator.writeEndArray();
+    } else {
+      generator.writeFieldName("coordinates");
+      writeCoordinates(geometry, type);
+    }
+
+    generator.writeEndObject();
+  }
+
+  private void writeCoordinates(GeoBufProtos.Data.Geometry geometry,
+                                GeoBufProtos.Data.Geometry.Type type) throws IOException {
+    int end = geometry.getCoordsCount();
+
+    switch (type) {
+      case POINT:
+        generator.writeStartArray();
+
+        for (int d = 0; d < dimensions; d++) {
+          generator.writeNumber(geometry.getCoords(d) / scale);
+        }
+
+        generator.writeEndArray();
+        break;
+      case MULTIPOINT:
+      case LINESTRING:
+        writeLine(geometry, 0, end, false);
+        break;
+      case MULTILINESTRING:
+      case POLYGON:
+        writeMultiLine(geometry, type == GeoBufProtos.Data.Geometry.Type.POLYGON);
+        break;
+      case MULTIPOLYGON:
+        writeMultiPolygon(geometry);
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported geometry type: " + type);
+    }
+  }
+
+  private void writeMultiLine(GeoBufProtos.Data.Geometry geometry, boolean closed)
+      throws IOException {
+    generator.writeStartArray();
+
+    if (geometry.getLengthsCount() == 0) {
+      writeLine(geometry, 0, geometry.getCoordsCount(), closed);
+    } else {
+      int start = 0;
+
+      for (int length : geometry.getLengthsList()) {
+        start = writeLine(geometry, start, start + length * dimensions, closed);
+      }
+    }
+
+    generator.writeEndArray();
+  }
+
+  /**
+   * Lengths of a MultiPolygon are the number of polygons, then for each polygon its number of
+   * rings followed by the number of points in each ring.
+   */
+  private void writeMultiPolygon(GeoBufProtos.Data.Geometry geometry) throws IOException {
+    generator.writeStartArray();
+
+    if (geometry.getLengthsCount() == 0) {
+      generator.writeStartArray();
+      writeLine(geometry, 0, geometry.getCoordsCount(), true);
+      generator.writeEndArray();
+    } else {
+      int polygons = geometry.getLengths(0);
+      int index = 1;
+      int start = 0;
+
+      for (int p = 0; p < polygons; p++) {
+        int rings = geometry.getLengths(index++);
+        generator.writeStartArray();
+
+        for (int r = 0; r < rings; r++) {
+          int length = geometry.getLengths(index++);
+          start = writeLine(geometry, start, start + length * dimensions, true);
+        }
+
+        generator.writeEndArray();
+      }
+    }
+
+    generator.writeEndArray();
+  }
+
+  /**
+   * Writes the points in coords[start, end) as an array.  Coordinates are deltas from the previous
+   * point of the same line, starting from zero for every line.  Closed rings omit their last point
+   * in geobuf, so the first point is written again.
+   *
+   * @return end, the start of the next line
+   */
+  private int writeLine(GeoBufProtos.Data.Geometry geometry, int start, int end, boolean closed)
+      throws IOException {
+    generator.writeStartArray();
+
+    for (int d = 0; d < dimensions; d++) {
+      point[d] = 0;
+    }
+
+    for (int i = start; i < end; i += dimensions) {
+      generator.writeStartArray();
+
+      for (int d = 0; d < dimensions; d++) {
+        point[d] += geometry.getCoords(i + d);
+        double value = point[d] / scale;
+        generator.writeNumber(value);
+
+        if (i == start) {
+          first[d] = value;
+        }
+      }
+
+      generator.writeEndArray();
+    }
+
+    if (closed && end > start) {
+      generator.writeArray(first, 0, dimensions);
+    }
+
+    generator.writeEndArray();
+
+    return end;
+  }
+
+  /**
+   * A GeoJSON shape encoded once and written as a raw value whenever the client serializes it.
+   */
+  public static final class GeoJsonShape implements JsonpSerializable {
+    private final String json;
+
+    GeoJsonShape(String json) {
+      this.json = json;
+    }
+
+    public String toJson() {
+      return json;
+    }
+
+    @Override
+    public void serialize(jakarta.json.stream.JsonGenerator generator, JsonpMapper mapper) {
+      if (generator instanceof JacksonJsonpGenerator) {
+        JsonGenerator jacksonGenerator = ((JacksonJsonpGenerator) generator).jacksonGenerator();
+
+        try {
+          // Smile and CBOR generators cannot write raw values, so they get the shape token by
+          // token.
+          if (jacksonGenerator instanceof JsonGeneratorImpl) {
+            jacksonGenerator.writeRawValue(json);
+          } else {
+            try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+              parser.nextToken();
+              jacksonGenerator.copyCurrentStructure(parser);
+            }
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      } else {
+        JsonData.fromJson(json).serialize(generator, mapper);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return json;
+    }
+  }
+}
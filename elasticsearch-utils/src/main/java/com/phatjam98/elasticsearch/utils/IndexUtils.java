@@ -7,13 +7,14 @@ import co.elastic.clients.elasticsearch._types.mapping.TypeMapping;
 import com.google.common.base.CaseFormat;
 import com.google.protobuf.Descriptors;
 import com.google.protobuf.GeneratedMessageV3;
+import com.google.protobuf.Message;
+import com.phatjam98.elasticsearch.utils.ProtoCodecRegistry.FieldPlan;
+import com.phatjam98.elasticsearch.utils.ProtoCodecRegistry.MessagePlan;
 import jakarta.inject.Singleton;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,6 +27,7 @@ import org.slf4j.LoggerFactory;
 @Singleton
 public class IndexUtils<T extends GeneratedMessageV3> {
   private static final Logger LOGGER = LoggerFactory.getLogger(IndexUtils.class);
+  private static final Map<Class<?>, TypeMapping> MAPPINGS = new ConcurrentHashMap<>();
   private final Class<T> klass;
 
   /**
@@ -74,36 +76,27 @@ public class IndexUtils<T extends GeneratedMessageV3> {
 
 
   /**
-   * This method is used to generate the TypeMapping for the Protobuf Message.
+   * This method is used to generate the TypeMapping for the Protobuf Message.  Mappings are built
+   * once per class from its {@link ProtoCodecRegistry.MessagePlan} and cached, since they are
+   * also used to derive the index name.
    *
    * @return TypeMapping
    */
   public TypeMapping generateTypeMapping() {
+    TypeMapping mapping = MAPPINGS.get(klass);
+    return mapping != null
+        ? mapping : MAPPINGS.computeIfAbsent(klass, IndexUtils::buildTypeMapping);
+  }
+
+  private static TypeMapping buildTypeMapping(Class<?> klass) {
     var mappingBuilder = new TypeMapping.Builder();
     mappingBuilder.dynamic(DynamicMapping.Strict);
 
-    Method getDescriptor = null;
-
     try {
-      getDescriptor = klass.getMethod("getDescriptor");
-    } catch (NoSuchMethodException e) {
-      LOGGER.error("The method getDescriptor was not found on class {}", klass.getName(), e);
-    }
-
-    if (getDescriptor != null) {
-      Descriptors.Descriptor descriptor = null;
-
-      try {
-        descriptor = (Descriptors.Descriptor) getDescriptor.invoke(null);
-      } catch (IllegalAccessException | InvocationTargetException e) {
-        LOGGER.error("Error occurred trying to invoke getDescriptor method", e);
-      }
-
-      if (descriptor != null) {
-        List<Descriptors.FieldDescriptor> fields = descriptor.getFields();
-        Map<String, Property> properties = generateProperties(fields);
-        mappingBuilder.properties(properties);
-      }
+      MessagePlan plan = ProtoCodecRegistry.plan(klass.asSubclass(Message.class));
+      mappingBuilder.properties(generateProperties(plan));
+    } catch (ClassCastException | IllegalArgumentException e) {
+      LOGGER.error("Unable to read the descriptor of class {}", klass.getName(), e);
     }
 
     return mappingBuilder.build();
@@ -118,7 +111,7 @@ public class IndexUtils<T extends GeneratedMessageV3> {
   }
 
   /**
-   * This loops over the List of FileDescriptors to create the desired Mappings.  Some Protobuf
+   * This loops over the FieldPlans of a message to create the desired Mappings.  Some Protobuf
    * Messages include other Protobuf Messages.  In this case we default to creating Nested mappings
    * for that FieldDescriptor, for example a location object.  However, there are specific cases
    * where we do not want to create Nested Properties. BaseData is one such area we need to
@@ -126,15 +119,14 @@ public class IndexUtils<T extends GeneratedMessageV3> {
    * <br/>
    * Repeated Fields are treated as Nested by default.
    *
-   * @param descriptorList List of FieldDescriptors
+   * @param plan MessagePlan of the message to map
    * @return Map of properties or completed mappings
    */
-  private Map<String, Property> generateProperties(
-      List<Descriptors.FieldDescriptor> descriptorList) {
+  private static Map<String, Property> generateProperties(MessagePlan plan) {
     var properties = new HashMap<String, Property>();
 
-    for (Descriptors.FieldDescriptor descriptor : descriptorList) {
-      Property.Kind type = getEsType(descriptor);
+    for (FieldPlan field : plan.fields()) {
+      Property.Kind type = getEsType(field);
       Property property = null;
 
       switch (type) {
@@ -167,20 +159,22 @@ public class IndexUtils<T extends GeneratedMessageV3> {
               .format("strict_date_optional_time||epoch_second"));
           break;
         case Nested:
-          var nestedProperties = generateProperties(descriptor.getMessageType().getFields());
+          var nestedProperties = generateProperties(
+              ProtoCodecRegistry.plan(field.descriptor().getMessageType()));
           property = PropertyBuilders.nested(np -> np.properties(nestedProperties));
           break;
         default:
           LOGGER.error("Something fell through getting Elasticsearch Type.");
       }
 
-      properties.put(descriptor.getName(), property);
+      properties.put(field.name(), property);
     }
 
     return properties;
   }
 
-  private Property.Kind getEsType(Descriptors.FieldDescriptor descriptor) {
+  private static Property.Kind getEsType(FieldPlan field) {
+    Descriptors.FieldDescriptor descriptor = field.descriptor();
     Property.Kind type = null;
 
     switch (descriptor.getType()) {
@@ -225,11 +219,9 @@ public class IndexUtils<T extends GeneratedMessageV3> {
         break;
       case GROUP:
       case MESSAGE:
-        String protoClass = descriptor.getMessageType().getFullName();
-
-        if (protoClass.equals("com.phatjam98.protos.Data")) {
+        if (field.kind() == ProtoCodecRegistry.Kind.GEOBUF) {
           type = Property.Kind.GeoShape;
-        } else if (protoClass.equals("google.protobuf.Timestamp")) {
+        } else if (field.kind() == ProtoCodecRegistry.Kind.TIMESTAMP) {
           type = Property.Kind.Date;
         } else {
           type = Property.Kind.Nested;
@@ -0,0 +1,264 @@
+package com.phatjam98.elasticsearch.utils;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import com.phatjam98.core.common.proto.GeoBufProtos;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of precompiled, immutable {@link MessagePlan}s, one per protobuf
+ * {@link Descriptors.Descriptor}.  A plan records once what the JSON codecs and mapping generator
+ * would otherwise rediscover on every call: field order, name lookup, and which fields are GeoBuf
+ * Data, Timestamps, maps or nested messages.  Generated classes are resolved to their default
+ * instance through a {@link MethodHandle} the first time they are seen, so builders are created
+ * with {@link Message#newBuilderForType()} instead of reflection.
+ */
+public final class ProtoCodecRegistry {
+
+  static final String TIMESTAMP_TYPE = "google.protobuf.Timestamp";
+  static final String VALUE_TYPE = "google.protobuf.Value";
+  static final String NULL_VALUE_TYPE = "google.protobuf.NullValue";
+  static final String WELL_KNOWN_PACKAGE = "google.protobuf";
+
+  private static final Map<Descriptors.Descriptor, MessagePlan> PLANS = new ConcurrentHashMap<>();
+
+  private static final ClassValue<Message> DEFAULT_INSTANCES = new ClassValue<>() {
+    @Override
+    protected Message computeValue(Class<?> type) {
+      try {
+        MethodHandle getDefaultInstance = MethodHandles.publicLookup()
+            .findStatic(type, "getDefaultInstance", MethodType.methodType(type));
+        return (Message) getDefaultInstance.invoke();
+      } catch (NoSuchMethodException | IllegalAccessException e) {
+        throw new IllegalArgumentException(type.getName() + " is not a generated protobuf message",
+            e);
+      } catch (Throwable e) {
+        throw new IllegalStateException("Error invoking getDefaultInstance on " + type.getName(),
+            e);
+      }
+    }
+  };
+
+  private ProtoCodecRegistry() {
+  }
+
+  /**
+   * Returns the plan for the given message type, compiling it on first use.
+   *
+   * @param descriptor message Descriptor
+   * @return MessagePlan
+   */
+  public static MessagePlan plan(Descriptors.Descriptor descriptor) {
+    MessagePlan plan = PLANS.get(descriptor);
+    return plan != null ? plan : PLANS.computeIfAbsent(descriptor, MessagePlan::new);
+  }
+
+  /**
+   * Returns the plan for the given generated message class, compiling it on first use.
+   *
+   * @param klass generated protobuf class
+   * @return MessagePlan
+   */
+  public static MessagePlan plan(Class<? extends Message> klass) {
+    return plan(defaultInstance(klass).getDescriptorForType());
+  }
+
+  /**
+   * Returns the cached default instance of a generated message class.
+   *
+   * @param klass generated protobuf class
+   * @param <T>   protobuf message type
+   * @return default instance
+   * @throws IllegalArgumentException the class is not a generated protobuf message
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends Message> T defaultInstance(Class<T> klass) {
+    return (T) DEFAULT_INSTANCES.get(klass);
+  }
+
+  /**
+   * Creates a new builder for a generated message class without reflection.
+   *
+   * @param klass generated protobuf class
+   * @return Message.Builder for the class
+   */
+  public static Message.Builder newBuilder(Class<? extends Message> klass) {
+    return defaultInstance(klass).newBuilderForType();
+  }
+
+  static Kind messageKind(Descriptors.Descriptor descriptor) {
+    if (descriptor == GeoBufProtos.Data.getDescriptor()) {
+      return Kind.GEOBUF;
+    } else if (TIMESTAMP_TYPE.equals(descriptor.getFullName())) {
+      return Kind.TIMESTAMP;
+    } else if (WELL_KNOWN_PACKAGE.equals(descriptor.getFile().getPackage())) {
+      return Kind.WELL_KNOWN;
+    }
+
+    return Kind.MESSAGE;
+  }
+
+  static Kind fieldKind(FieldDescriptor field) {
+    if (field.isMapField()) {
+      return Kind.MAP;
+    }
+
+    switch (field.getJavaType()) {
+      case ENUM:
+        return Kind.ENUM;
+      case MESSAGE:
+        return messageKind(field.getMessageType());
+      default:
+        return Kind.SCALAR;
+    }
+  }
+
+  /**
+   * How a message or field value is encoded.
+   */
+  public enum Kind {
+    SCALAR,
+    ENUM,
+    MAP,
+    MESSAGE,
+    GEOBUF,
+    TIMESTAMP,
+    WELL_KNOWN
+  }
+
+  /**
+   * Immutable plan for a message type.  Fields are held in field number order, which is the order
+   * JsonFormat prints them in.
+   */
+  public static final class MessagePlan {
+    private final Descriptors.Descriptor descriptor;
+    private final Kind kind;
+    private final List<FieldPlan> fields;
+    private final Map<String, FieldPlan> fieldsByName;
+
+    private MessagePlan(Descriptors.Descriptor descriptor) {
+      this.descriptor = descriptor;
+      this.kind = messageKind(descriptor);
+
+      List<FieldPlan> sorted = new ArrayList<>();
+      Map<String, FieldPlan> byName = new HashMap<>();
+
+      for (FieldDescriptor field : descriptor.getFields()) {
+        FieldPlan fieldPlan = new FieldPlan(field);
+        sorted.add(fieldPlan);
+        // JsonFormat accepts both the proto field name and the lowerCamel JSON name.
+        byName.put(field.getName(), fieldPlan);
+        byName.putIfAbsent(field.getJsonName(), fieldPlan);
+      }
+
+      sorted.sort(Comparator.comparingInt(f -> f.descriptor().getNumber()));
+      this.fields = List.copyOf(sorted);
+      this.fieldsByName = Map.copyOf(byName);
+    }
+
+    public Descriptors.Descriptor descriptor() {
+      return descriptor;
+    }
+
+    public Kind kind() {
+      return kind;
+    }
+
+    public List<FieldPlan> fields() {
+      return fields;
+    }
+
+    /**
+     * Looks up a field by proto name or JSON name.
+     *
+     * @param name field name
+     * @return FieldPlan or null when the message has no such field
+     */
+    public FieldPlan field(String name) {
+      return fieldsByName.get(name);
+    }
+  }
+
+  /**
+   * Immutable plan for a single field.  For map fields the key and value descriptors are
+   * resolved up front.
+   */
+  public static final class FieldPlan {
+    private final FieldDescriptor descriptor;
+    private final Kind kind;
+    private final FieldDescriptor mapKey;
+    private final FieldDescriptor mapValue;
+    private final Kind mapValueKind;
+    private final boolean acceptsNull;
+
+    private FieldPlan(FieldDescriptor descriptor) {
+      this.descriptor = descriptor;
+      this.kind = fieldKind(descriptor);
+
+      if (kind == Kind.MAP) {
+        this.mapKey = descriptor.getMessageType().findFieldByNumber(1);
+        this.mapValue = descriptor.getMessageType().findFieldByNumber(2);
+        this.mapValueKind = fieldKind(mapValue);
+      } else {
+        this.mapKey = null;
+        this.mapValue = null;
+        this.mapValueKind = null;
+      }
+
+      if (descriptor.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+        this.acceptsNull = VALUE_TYPE.equals(descriptor.getMessageType().getFullName());
+      } else if (descriptor.getJavaType() == FieldDescriptor.JavaType.ENUM) {
+        this.acceptsNull = NULL_VALUE_TYPE.equals(descriptor.getEnumType().getFullName());
+      } else {
+        this.acceptsNull = false;
+      }
+    }
+
+    public FieldDescriptor descriptor() {
+      return descriptor;
+    }
+
+    public String name() {
+      return descriptor.getName();
+    }
+
+    public Kind kind() {
+      return kind;
+    }
+
+    public boolean isRepeated() {
+      return descriptor.isRepeated();
+    }
+
+    public FieldDescriptor mapKey() {
+      return mapKey;
+    }
+
+    public FieldDescriptor mapValue() {
+      return mapValue;
+    }
+
+    public Kind mapValueKind() {
+      return mapValueKind;
+    }
+
+    /**
+     * Whether a JSON null is a value for this field (google.protobuf.Value and NullValue) rather
+     * than an absent field.
+     *
+     * @return true when null should be parsed
+     */
+    public boolean acceptsNull() {
+      return acceptsNull;
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package com.phatjam98.elasticsearch.utils;
+
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.Deserializers;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.google.protobuf.Message;
+import com.google.protobuf.MessageOrBuilder;
+import java.io.IOException;
+
+/**
+ * Jackson module that reads and writes protobuf messages with {@link ProtoJsonReader} and
+ * {@link ProtoJsonWriter}.  Registered on the ObjectMapper behind the Elasticsearch client's
+ * {@link JacksonJsonpMapper}, it lets {@code esAsyncClient.search(request, MyProto.class)} decode
+ * each hit's {@code _source} straight from the response tokens into a protobuf message, and lets
+ * protobuf documents be passed directly to index and create requests.
+ */
+public class ProtoJacksonModule extends SimpleModule {
+
+  /**
+   * Registers the protobuf serializer and deserializers.
+   */
+  public ProtoJacksonModule() {
+    super(ProtoJacksonModule.class.getSimpleName());
+    addSerializer(MessageOrBuilder.class, new MessageSerializer());
+  }
+
+  /**
+   * Creates a {@link JacksonJsonpMapper} configured like the client's default mapper with this
+   * module registered.
+   *
+   * @return JacksonJsonpMapper
+   */
+  public static JacksonJsonpMapper jsonpMapper() {
+    return jsonpMapper(new JsonFactory());
+  }
+
+  /**
+   * Creates a {@link JacksonJsonpMapper} with this module registered that reads and writes with
+   * the given factory, for example a SmileFactory for binary request and response bodies.
+   *
+   * @param jsonFactory Jackson factory for the wire format
+   * @return JacksonJsonpMapper
+   */
+  public static JacksonJsonpMapper jsonpMapper(JsonFactory jsonFactory) {
+    ObjectMapper objectMapper = new ObjectMapper(jsonFactory)
+        .configure(SerializationFeature.INDENT_OUTPUT, false)
+        .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+        .registerModule(new ProtoJacksonModule());
+
+    return new JacksonJsonpMapper(objectMapper);
+  }
+
+  @Override
+  public void setupModule(SetupContext context) {
+    super.setupModule(context);
+    context.addDeserializers(new MessageDeserializers());
+  }
+
+  private static class MessageDeserializers extends Deserializers.Base {
+    @Override
+    public JsonDeserializer<?> findBeanDeserializer(JavaType type, DeserializationConfig config,
+                                                    BeanDescription beanDesc) {
+      if (Message.class.isAssignableFrom(type.getRawClass())) {
+        return new MessageDeserializer(type.getRawClass().asSubclass(Message.class));
+      }
+
+      return null;
+    }
+  }
+
+  private static class MessageDeserializer extends JsonDeserializer<Message> {
+    private final Class<? extends Message> klass;
+
+    MessageDeserializer(Class<? extends Message> klass) {
+      this.klass = klass;
+    }
+
+    @Override
+    public Message deserialize(JsonParser parser, DeserializationContext context)
+        throws IOException {
+      Message.Builder builder = ProtoCodecRegistry.newBuilder(klass);
+      ProtoJsonReader.merge(parser, builder);
+
+      return builder.build();
+    }
+  }
+
+  private static class MessageSerializer extends StdSerializer<MessageOrBuilder> {
+    MessageSerializer() {
+      super(MessageOrBuilder.class);
+    }
+
+    @Override
+    public void serialize(MessageOrBuilder value, JsonGenerator generator,
+                          SerializerProvider provider) throws IOException {
+      ProtoJsonWriter.write(value, generator);
+    }
+  }
+}
@@ -0,0 +1,395 @@
+package com.phatjam98.elasticsearch.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.util.JsonFormat;
+import com.google.protobuf.util.Timestamps;
+import com.phatjam98.core.common.proto.GeoBufProtos;
+import com.phatjam98.elasticsearch.utils.ProtoCodecRegistry.FieldPlan;
+import com.phatjam98.elasticsearch.utils.ProtoCodecRegistry.Kind;
+import com.phatjam98.elasticsearch.utils.ProtoCodecRegistry.MessagePlan;
+import com.phatjam98.geobuf.utils.GeobufUtils;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.ParseException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Reads JSON tokens straight into a protobuf {@link Message.Builder}, using the
+ * {@link MessagePlan} of the builder's type to decide how each value is converted.  This is the
+ * inverse of {@link ProtoJsonWriter}:
+ * <ul>
+ *   <li>{@link GeoBufProtos.Data} fields accept GeoJSON (as stored in Elasticsearch) or the
+ *   geobuf proto JSON.</li>
+ *   <li>Timestamp fields accept RFC 3339 strings, date-times without an offset (read in the
+ *   system default zone), dates, or epoch seconds, matching the {@code
+ *   strict_date_optional_time||epoch_second} format used by {@link IndexUtils}.</li>
+ *   <li>Unknown fields are skipped, as with {@code JsonFormat.parser().ignoringUnknownFields()}.
+ *   </li>
+ * </ul>
+ */
+public final class ProtoJsonReader {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+  private static final ObjectMapper MAPPER = new ObjectMapper(JSON_FACTORY);
+  private static final JsonFormat.Parser PARSER = JsonFormat.parser().ignoringUnknownFields();
+  private static final BigInteger MAX_UINT64 = BigInteger.ONE.shiftLeft(64);
+
+  private ProtoJsonReader() {
+  }
+
+  /**
+   * Merges a JSON String into the given builder.
+   *
+   * @param json    JSON string
+   * @param builder protobuf builder to merge into
+   * @throws IOException JSON is malformed or does not match the message
+   */
+  public static void merge(String json, Message.Builder builder) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+      merge(parser, builder);
+    }
+  }
+
+  /**
+   * Merges UTF-8 JSON bytes into the given builder.
+   *
+   * @param json    UTF-8 JSON bytes
+   * @param builder protobuf builder to merge into
+   * @throws IOException JSON is malformed or does not match the message
+   */
+  public static void merge(byte[] json, Message.Builder builder) throws IOException {
+    merge(json, 0, json.length, builder);
+  }
+
+  /**
+   * Merges a slice of UTF-8 JSON bytes into the given builder.
+   *
+   * @param json    UTF-8 JSON bytes
+   * @param offset  start of the JSON document
+   * @param length  length of the JSON document
+   * @param builder protobuf builder to merge into
+   * @throws IOException JSON is malformed or does not match the message
+   */
+  public static void merge(byte[] json, int offset, int length, Message.Builder builder)
+      throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(json, offset, length)) {
+      merge(parser, builder);
+    }
+  }
+
+  /**
+   * Merges JSON read from the stream into the given builder.  The stream is not closed.
+   *
+   * @param json    JSON stream
+   * @param builder protobuf builder to merge into
+   * @throws IOException JSON is malformed or does not match the message
+   */
+  public static void merge(InputStream json, Message.Builder builder) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+      parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+      merge(parser, builder);
+    }
+  }
+
+  /**
+   * Merges the next JSON value from the parser into the given builder.  The parser may be
+   * positioned before or on the value; afterwards it is positioned on the value's last token, so
+   * this can be used to read a message embedded in a larger document.
+   *
+   * @param parser  JsonParser to read from
+   * @param builder protobuf builder to merge into
+   * @throws IOException JSON is malformed or does not match the message
+   */
+  public static void merge(JsonParser parser, Message.Builder builder) throws IOException {
+    JsonToken token = parser.currentToken();
+
+    if (token == null) {
+      token = parser.nextToken();
+    }
+
+    if (token != null && token != JsonToken.VALUE_NULL) {
+      mergeValue(parser, builder);
+    }
+  }
+
+  private static void mergeValue(JsonParser parser, Message.Builder builder) throws IOException {
+    MessagePlan plan = ProtoCodecRegistry.plan(builder.getDescriptorForType());
+
+    switch (plan.kind()) {
+      case GEOBUF:
+        mergeGeo(parser, builder);
+        break;
+      case TIMESTAMP:
+        builder.mergeFrom(readTimestamp(parser));
+        break;
+      case WELL_KNOWN:
+        PARSER.merge(MAPPER.writeValueAsString(MAPPER.readTree(parser)), builder);
+        break;
+      default:
+        mergeObject(parser, plan, builder);
+        break;
+    }
+  }
+
+  private static void mergeObject(JsonParser parser, MessagePlan plan, Message.Builder builder)
+      throws IOException {
+    if (parser.currentToken() != JsonToken.START_OBJECT) {
+      throw new InvalidProtocolBufferException("Expected an object for "
+          + plan.descriptor().getFullName() + " but got: " + parser.currentToken());
+    }
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      FieldPlan field = plan.field(parser.getCurrentName());
+      JsonToken token = parser.nextToken();
+
+      if (field == null) {
+        parser.skipChildren();
+      } else if (token != JsonToken.VALUE_NULL || field.acceptsNull()) {
+        mergeField(parser, field, builder);
+      }
+    }
+  }
+
+  private static void mergeField(JsonParser parser, FieldPlan field, Message.Builder builder)
+      throws IOException {
+    FieldDescriptor descriptor = field.descriptor();
+
+    if (field.kind() == Kind.MAP) {
+      mergeMap(parser, field, builder);
+    } else if (field.isRepeated()) {
+      expect(parser, JsonToken.START_ARRAY, descriptor);
+
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        if (parser.currentToken() == JsonToken.VALUE_NULL && !field.acceptsNull()) {
+          throw new InvalidProtocolBufferException(
+              "Repeated field elements cannot be null in field: " + descriptor.getFullName());
+        }
+
+        Object value = readElement(parser, descriptor, builder);
+
+        if (value != null) {
+          builder.addRepeatedField(descriptor, value);
+        }
+      }
+    } else if (descriptor.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+      mergeValue(parser, builder.getFieldBuilder(descriptor));
+    } else {
+      Object value = readScalar(parser, descriptor);
+
+      if (value != null) {
+        builder.setField(descriptor, value);
+      }
+    }
+  }
+
+  private static Object readElement(JsonParser parser, FieldDescriptor field,
+                                    Message.Builder builder) throws IOException {
+    if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+      Message.Builder element = builder.newBuilderForField(field);
+      mergeValue(parser, element);
+      return element.build();
+    }
+
+    return readScalar(parser, field);
+  }
+
+  private static void mergeMap(JsonParser parser, FieldPlan field, Message.Builder builder)
+      throws IOException {
+    expect(parser, JsonToken.START_OBJECT, field.descriptor());
+    FieldDescriptor keyField = field.mapKey();
+    FieldDescriptor valueField = field.mapValue();
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      Message.Builder entry = builder.newBuilderForField(field.descriptor());
+      entry.setField(keyField, readScalar(parser, keyField));
+      parser.nextToken();
+      Object value = readElement(parser, valueField, entry);
+
+      if (value != null) {
+        entry.setField(valueField, value);
+        builder.addRepeatedField(field.descriptor(), entry.build());
+      }
+    }
+  }
+
+  private static Object readScalar(JsonParser parser, FieldDescriptor field) throws IOException {
+    JsonToken token = parser.currentToken();
+
+    if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+      throw new InvalidProtocolBufferException(
+          "Expected a scalar for field " + field.getFullName() + " but got: " + token);
+    }
+
+    switch (field.getType()) {
+      case INT32:
+      case SINT32:
+      case SFIXED32:
+        return token == JsonToken.VALUE_NUMBER_INT ? parser.getIntValue()
+            : new BigDecimal(parser.getText().trim()).intValueExact();
+      case UINT32:
+      case FIXED32:
+        long unsignedInt = token == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue()
+            : new BigDecimal(parser.getText().trim()).longValueExact();
+        if (unsignedInt < 0 || unsignedInt > 0xFFFFFFFFL) {
+          throw new InvalidProtocolBufferException("Out of range uint32 value: " + unsignedInt);
+        }
+        return (int) unsignedInt;
+      case INT64:
+      case SINT64:
+      case SFIXED64:
+        return token == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue()
+            : new BigDecimal(parser.getText().trim()).longValueExact();
+      case UINT64:
+      case FIXED64:
+        BigInteger unsignedLong = new BigDecimal(parser.getText().trim()).toBigIntegerExact();
+        if (unsignedLong.signum() < 0 || unsignedLong.compareTo(MAX_UINT64) >= 0) {
+          throw new InvalidProtocolBufferException("Out of range uint64 value: " + unsignedLong);
+        }
+        return unsignedLong.longValue();
+      case FLOAT:
+        return (float) readDouble(parser);
+      case DOUBLE:
+        return readDouble(parser);
+      case BOOL:
+        if (token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) {
+          return parser.getBooleanValue();
+        }
+        return Boolean.parseBoolean(parser.getText());
+      case STRING:
+        return parser.getText();
+      case BYTES:
+        return readBytes(parser.getText());
+      case ENUM:
+        return readEnum(parser, field.getEnumType());
+      default:
+        throw new InvalidProtocolBufferException(
+            "Unsupported field type " + field.getType() + " for " + field.getFullName());
+    }
+  }
+
+  private static double readDouble(JsonParser parser) throws IOException {
+    if (parser.currentToken().isNumeric()) {
+      return parser.getDoubleValue();
+    }
+
+    String text = parser.getText().trim();
+
+    switch (text) {
+      case "NaN":
+        return Double.NaN;
+      case "Infinity":
+        return Double.POSITIVE_INFINITY;
+      case "-Infinity":
+        return Double.NEGATIVE_INFINITY;
+      default:
+        return Double.parseDouble(text);
+    }
+  }
+
+  static ByteString readBytes(String text) throws InvalidProtocolBufferException {
+    try {
+      return ByteString.copyFrom(Base64.getDecoder().decode(text));
+    } catch (IllegalArgumentException e) {
+      try {
+        return ByteString.copyFrom(Base64.getUrlDecoder().decode(text));
+      } catch (IllegalArgumentException urlException) {
+        throw new InvalidProtocolBufferException("Invalid base64 bytes: " + text);
+      }
+    }
+  }
+
+  private static Descriptors.EnumValueDescriptor readEnum(JsonParser parser,
+                                                          Descriptors.EnumDescriptor enumType)
+      throws IOException {
+    JsonToken token = parser.currentToken();
+
+    if (token == JsonToken.VALUE_NULL) {
+      return enumType.findValueByNumber(0);
+    } else if (token == JsonToken.VALUE_NUMBER_INT) {
+      return enumType.findValueByNumber(parser.getIntValue());
+    }
+
+    // Unknown names are ignored, as with JsonFormat.parser().ignoringUnknownFields().
+    return enumType.findValueByName(parser.getText());
+  }
+
+  private static Timestamp readTimestamp(JsonParser parser) throws IOException {
+    JsonToken token = parser.currentToken();
+
+    if (token == JsonToken.START_OBJECT) {
+      Timestamp.Builder builder = Timestamp.newBuilder();
+      mergeObject(parser, ProtoCodecRegistry.plan(Timestamp.getDescriptor()), builder);
+      return builder.build();
+    } else if (token.isNumeric()) {
+      return epochSeconds(parser.getDecimalValue());
+    }
+
+    return parseTimestamp(parser.getText());
+  }
+
+  static Timestamp epochSeconds(BigDecimal seconds) {
+    return Timestamp.newBuilder().setSeconds(seconds.longValue())
+        .setNanos(seconds.remainder(BigDecimal.ONE).movePointRight(9).intValue())
+        .build();
+  }
+
+  static Timestamp parseTimestamp(String value) throws InvalidProtocolBufferException {
+    try {
+      return Timestamps.parse(value);
+    } catch (ParseException e) {
+      // Not RFC 3339, fall back to a local date-time or date.
+    }
+
+    try {
+      Instant instant;
+
+      if (value.indexOf('T') > 0) {
+        instant = LocalDateTime.parse(value).atZone(ZoneId.systemDefault()).toInstant();
+      } else {
+        instant = LocalDate.parse(value).atStartOfDay(ZoneId.systemDefault()).toInstant();
+      }
+
+      return Timestamp.newBuilder().setSeconds(instant.getEpochSecond())
+          .setNanos(instant.getNano()).build();
+    } catch (DateTimeParseException e) {
+      throw new InvalidProtocolBufferException("Failed to parse timestamp: " + value);
+    }
+  }
+
+  private static void mergeGeo(JsonParser parser, Message.Builder builder) throws IOException {
+    JsonNode node = MAPPER.readTree(parser);
+    String json = MAPPER.writeValueAsString(node);
+
+    if (node.has("type")) {
+      // GeoJSON, as written by ProtoJsonWriter.
+      builder.mergeFrom(new GeobufUtils(json).getGeobuf());
+    } else {
+      PARSER.merge(json, builder);
+    }
+  }
+
+  private static void expect(JsonParser parser, JsonToken expected, FieldDescriptor field)
+      throws InvalidProtocolBufferException {
+    if (parser.currentToken() != expected) {
+      throw new InvalidProtocolBufferException("Expected " + expected + " for field "
+          + field.getFullName() + " but got: " + parser.currentToken());
+    }
+  }
+}
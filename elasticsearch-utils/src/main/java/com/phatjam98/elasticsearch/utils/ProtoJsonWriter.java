@@ -0,0 +1,292 @@
+package com.phatjam98.elasticsearch.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import com.google.protobuf.MessageOrBuilder;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.util.JsonFormat;
+import com.google.protobuf.util.Timestamps;
+import com.phatjam98.core.common.proto.GeoBufProtos;
+import com.phatjam98.elasticsearch.utils.ProtoCodecRegistry.FieldPlan;
+import com.phatjam98.elasticsearch.utils.ProtoCodecRegistry.Kind;
+import com.phatjam98.elasticsearch.utils.ProtoCodecRegistry.MessagePlan;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Writes a protobuf message as JSON in a single pass over its {@link MessagePlan}, emitting
+ * tokens straight to a Jackson {@link JsonGenerator}.  {@link GeoBufProtos.Data} fields
+ * are written inline as GeoJSON so the output can be indexed into geo_shape mappings.
+ *
+ * <p>Output is the same as printing with
+ * {@code JsonFormat.printer().omittingInsignificantWhitespace().preservingProtoFieldNames()}
+ * and swapping every GeoBuf field for its GeoJSON, without the intermediate String and Map
+ * representations.
+ */
+public final class ProtoJsonWriter {
+
+  private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+      .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+      .build();
+
+  private static final JsonFormat.Printer PRINTER = JsonFormat.printer()
+      .omittingInsignificantWhitespace().preservingProtoFieldNames();
+
+  private ProtoJsonWriter() {
+  }
+
+  /**
+   * Converts a protobuf message to a JSON String including GeoJSON from GeoBuf.Data.
+   *
+   * @param message protobuf message
+   * @return JSON string
+   * @throws IOException JSON generation error
+   */
+  public static String toJson(MessageOrBuilder message) throws IOException {
+    StringWriter writer = new StringWriter();
+
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+      write(message, generator);
+    }
+
+    return writer.toString();
+  }
+
+  /**
+   * Converts a protobuf message to UTF-8 encoded JSON bytes including GeoJSON from GeoBuf.Data.
+   *
+   * @param message protobuf message
+   * @return UTF-8 JSON bytes
+   * @throws IOException JSON generation error
+   */
+  public static byte[] toJsonBytes(MessageOrBuilder message) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    write(message, out);
+
+    return out.toByteArray();
+  }
+
+  /**
+   * Writes a protobuf message as UTF-8 JSON to the given stream.  The stream is flushed but left
+   * open.
+   *
+   * @param message protobuf message
+   * @param out     OutputStream to write to
+   * @throws IOException JSON generation error
+   */
+  public static void write(MessageOrBuilder message, OutputStream out) throws IOException {
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+      write(message, generator);
+    }
+  }
+
+  /**
+   * Writes a protobuf message to the given generator as a single JSON value.  The generator is
+   * neither flushed nor closed, so this can be used to embed a message in a larger document.
+   *
+   * @param message   protobuf message
+   * @param generator JsonGenerator to write to
+   * @throws IOException JSON generation error
+   */
+  public static void write(MessageOrBuilder message, JsonGenerator generator) throws IOException {
+    MessagePlan plan = ProtoCodecRegistry.plan(message.getDescriptorForType());
+
+    if (message instanceof Message) {
+      writeMessageValue(plan.kind(), (Message) message, generator);
+    } else {
+      writeMessage(message, plan, generator);
+    }
+  }
+
+  private static void writeMessage(MessageOrBuilder message, MessagePlan plan,
+                                   JsonGenerator generator) throws IOException {
+    generator.writeStartObject();
+
+    for (FieldPlan field : plan.fields()) {
+      FieldDescriptor descriptor = field.descriptor();
+
+      if (field.isRepeated() ? message.getRepeatedFieldCount(descriptor) > 0
+          : message.hasField(descriptor)) {
+        generator.writeFieldName(field.name());
+        writeField(message, field, generator);
+      }
+    }
+
+    generator.writeEndObject();
+  }
+
+  private static void writeField(MessageOrBuilder message, FieldPlan field,
+                                 JsonGenerator generator) throws IOException {
+    FieldDescriptor descriptor = field.descriptor();
+
+    if (field.kind() == Kind.MAP) {
+      writeMap(message, field, generator);
+    } else if (field.isRepeated()) {
+      int count = message.getRepeatedFieldCount(descriptor);
+      generator.writeStartArray();
+
+      for (int i = 0; i < count; i++) {
+        writeValue(descriptor, field.kind(), message.getRepeatedField(descriptor, i), generator);
+      }
+
+      generator.writeEndArray();
+    } else {
+      writeValue(descriptor, field.kind(), message.getField(descriptor), generator);
+    }
+  }
+
+  private static void writeMap(MessageOrBuilder message, FieldPlan field,
+                               JsonGenerator generator) throws IOException {
+    FieldDescriptor keyField = field.mapKey();
+    FieldDescriptor valueField = field.mapValue();
+    generator.writeStartObject();
+
+    for (Object element : (List<?>) message.getField(field.descriptor())) {
+      Message entry = (Message) element;
+      generator.writeFieldName(mapKey(keyField, entry.getField(keyField)));
+      writeValue(valueField, field.mapValueKind(), entry.getField(valueField), generator);
+    }
+
+    generator.writeEndObject();
+  }
+
+  private static String mapKey(FieldDescriptor keyField, Object key) {
+    switch (keyField.getType()) {
+      case UINT32:
+      case FIXED32:
+        return Integer.toUnsignedString((Integer) key);
+      case UINT64:
+      case FIXED64:
+        return Long.toUnsignedString((Long) key);
+      default:
+        return String.valueOf(key);
+    }
+  }
+
+  private static void writeValue(FieldDescriptor field, Kind kind, Object value,
+                                 JsonGenerator generator) throws IOException {
+    switch (kind) {
+      case SCALAR:
+        writeScalar(field, value, generator);
+        break;
+      case ENUM:
+        writeEnum((Descriptors.EnumValueDescriptor) value, generator);
+        break;
+      default:
+        writeMessageValue(kind, (Message) value, generator);
+        break;
+    }
+  }
+
+  private static void writeScalar(FieldDescriptor field, Object value, JsonGenerator generator)
+      throws IOException {
+    switch (field.getType()) {
+      case INT32:
+      case SINT32:
+      case SFIXED32:
+        generator.writeNumber((Integer) value);
+        break;
+      case UINT32:
+      case FIXED32:
+        generator.writeNumber(Integer.toUnsignedLong((Integer) value));
+        break;
+      case INT64:
+      case SINT64:
+      case SFIXED64:
+        generator.writeString(Long.toString((Long) value));
+        break;
+      case UINT64:
+      case FIXED64:
+        generator.writeString(Long.toUnsignedString((Long) value));
+        break;
+      case FLOAT:
+        Float floatValue = (Float) value;
+        if (floatValue.isNaN() || floatValue.isInfinite()) {
+          generator.writeString(floatValue.toString());
+        } else {
+          generator.writeNumber(floatValue);
+        }
+        break;
+      case DOUBLE:
+        Double doubleValue = (Double) value;
+        if (doubleValue.isNaN() || doubleValue.isInfinite()) {
+          generator.writeString(doubleValue.toString());
+        } else {
+          generator.writeNumber(doubleValue);
+        }
+        break;
+      case BOOL:
+        generator.writeBoolean((Boolean) value);
+        break;
+      case STRING:
+        generator.writeString((String) value);
+        break;
+      case BYTES:
+        generator.writeString(
+            Base64.getEncoder().encodeToString(((ByteString) value).toByteArray()));
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported field type: " + field.getType());
+    }
+  }
+
+  private static void writeEnum(Descriptors.EnumValueDescriptor value, JsonGenerator generator)
+      throws IOException {
+    if (ProtoCodecRegistry.NULL_VALUE_TYPE.equals(value.getType().getFullName())) {
+      generator.writeNull();
+    } else if (value.getIndex() == -1) {
+      // Unrecognized values are printed by number, as JsonFormat does.
+      generator.writeNumber(value.getNumber());
+    } else {
+      generator.writeString(value.getName());
+    }
+  }
+
+  private static void writeMessageValue(Kind kind, Message message, JsonGenerator generator)
+      throws IOException {
+    switch (kind) {
+      case GEOBUF:
+        writeGeoJson((GeoBufProtos.Data) message, generator);
+        break;
+      case TIMESTAMP:
+        generator.writeString(Timestamps.toString((Timestamp) message));
+        break;
+      case WELL_KNOWN:
+        copyPrinted(message, generator);
+        break;
+      default:
+        writeMessage(message, ProtoCodecRegistry.plan(message.getDescriptorForType()), generator);
+        break;
+    }
+  }
+
+  private static void writeGeoJson(GeoBufProtos.Data data, JsonGenerator generator)
+      throws IOException {
+    GeoJsonEncoder.write(data, generator);
+  }
+
+  /**
+   * Well-known types other than Timestamp (Struct, Value, Any, wrappers...) have special JSON
+   * mappings, so they are rare enough on the ingest path to defer to JsonFormat.
+   */
+  private static void copyPrinted(Message message, JsonGenerator generator) throws IOException {
+    copyJson(PRINTER.print(message), generator);
+  }
+
+  private static void copyJson(String json, JsonGenerator generator) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+      parser.nextToken();
+      generator.copyCurrentStructure(parser);
+    }
+  }
+}
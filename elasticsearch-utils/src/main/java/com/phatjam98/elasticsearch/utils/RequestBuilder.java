@@ -6,9 +6,14 @@ import co.elastic.clients.elasticsearch._types.ScriptSort;
 import co.elastic.clients.elasticsearch._types.SortOptions;
 import co.elastic.clients.elasticsearch._types.SortOrder;
 import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.FieldAndFormat;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch._types.query_dsl.QueryBuilders;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.search.SourceConfig;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.phatjam98.core.common.proto.FlatStructProtos;
 import com.phatjam98.elasticsearch.utils.models.AnyInField;
 import com.phatjam98.elasticsearch.utils.models.ContainsField;
@@ -22,6 +27,7 @@ import com.phatjam98.elasticsearch.utils.models.RangeField;
 import com.phatjam98.elasticsearch.utils.models.geo.BoundingBoxField;
 import com.phatjam98.elasticsearch.utils.models.geo.DistanceField;
 import com.phatjam98.elasticsearch.utils.models.geo.ShapeField;
+import com.phatjam98.protos.service.protos.AggregationCriteria;
 import com.phatjam98.protos.service.protos.FieldCondition;
 import com.phatjam98.protos.service.protos.GeoDistanceSort;
 import com.phatjam98.protos.service.protos.Pagination;
@@ -30,6 +36,7 @@ import com.phatjam98.protos.service.protos.SearchCriteria;
 import com.phatjam98.protos.service.protos.SearchOperationType;
 import com.phatjam98.protos.service.protos.SortingCriteria;
 import com.phatjam98.protos.service.protos.SortingOrder;
+import com.phatjam98.protos.service.protos.TotalHitsPolicy;
 import jakarta.inject.Singleton;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -47,6 +54,50 @@ public class RequestBuilder {
 
   static final String UNRECOGNIZED = "UNRECOGNIZED";
   static final String PIT_KEEP_ALIVE = "1m";
+  static final int DEFAULT_TOTAL_HITS_BOUND = 10_000;
+  static final String SHARD_DOC = "_shard_doc";
+  static final int DEFAULT_PAGE_SIZE = 10;
+  static final long DEFAULT_QUERY_CACHE_SIZE = 1_000;
+
+  private String pitKeepAlive = PIT_KEEP_ALIVE;
+  private volatile Cache<SearchCriteria, Query> queryCache =
+      newQueryCache(DEFAULT_QUERY_CACHE_SIZE);
+
+  /**
+   * Sets the keep alive sent with point in time searches, {@value #PIT_KEEP_ALIVE} by default.
+   *
+   * @param pitKeepAlive String Elasticsearch time value such as 30s or 5m
+   */
+  public void setPitKeepAlive(String pitKeepAlive) {
+    this.pitKeepAlive = pitKeepAlive;
+  }
+
+  /**
+   * Sets how many compiled queries {@link #buildQuery(SearchCriteria)} keeps, least recently used
+   * first out, {@value #DEFAULT_QUERY_CACHE_SIZE} by default.  Zero turns the cache off.  Replaces
+   * the cache, so cached queries and stats start over.
+   *
+   * @param maxSize long maximum number of cached queries
+   */
+  public void setQueryCacheSize(long maxSize) {
+    this.queryCache = newQueryCache(maxSize);
+  }
+
+  /**
+   * Hit, miss and eviction counts of the compiled query cache.
+   *
+   * @return CacheStats
+   */
+  public CacheStats getQueryCacheStats() {
+    return queryCache.stats();
+  }
+
+  private static Cache<SearchCriteria, Query> newQueryCache(long maxSize) {
+    return CacheBuilder.newBuilder()
+        .maximumSize(maxSize)
+        .recordStats()
+        .build();
+  }
 
   /**
    * Takes in an indexName and {@link SearchCriteria} to construct the necessary SearchRequest.
@@ -69,23 +120,128 @@ public class RequestBuilder {
    * @return SearchRequest used by elasticsearch service
    */
   public SearchRequest buildRequest(List<String> indexNames, SearchCriteria searchCriteria) {
+    return buildRequest(indexNames, searchCriteria, pitKeepAlive);
+  }
+
+  /**
+   * Takes in indexNames and {@link SearchCriteria} to construct the necessary SearchRequest,
+   * keeping its point in time, if any, alive for the given time.
+   *
+   * @param indexNames     List of Strings names of the indices to search
+   * @param searchCriteria SearchCriteria Proto used to construct the SearchRequest
+   * @param pitKeepAlive   String Elasticsearch time value to keep the point in time alive for
+   * @return SearchRequest used by elasticsearch service
+   */
+  public SearchRequest buildRequest(List<String> indexNames, SearchCriteria searchCriteria,
+                                    String pitKeepAlive) {
     SearchRequest.Builder searchBuilder = new SearchRequest.Builder();
     Query query = buildQuery(searchCriteria);
     searchBuilder.query(query);
+    var pagination = searchCriteria.getPagination();
+    var pit = CursorUtils.getPitId(pagination);
 
     if (searchCriteria.hasPagination()) {
-      setPagination(searchCriteria.getPagination(), searchBuilder);
+      setPagination(pagination, searchBuilder, pitKeepAlive);
     }
 
     if (!searchCriteria.getSortingCriteriaList().isEmpty()) {
       addSorts(searchCriteria, searchBuilder);
     }
 
-    searchBuilder.index(indexNames);
+    var source = sourceConfig(searchCriteria);
+
+    if (source != null) {
+      searchBuilder.source(source);
+    }
+
+    if (searchCriteria.getDocvalueFieldsCount() > 0) {
+      setDocValueFields(searchCriteria, searchBuilder);
+    }
+
+    if (CursorUtils.isSearchAfter(pagination) && !pit.isEmpty()) {
+      addTiebreaker(searchBuilder);
+    }
+
+    // A point in time already targets its indices, Elasticsearch rejects searches naming both.
+    if (pit.isEmpty()) {
+      searchBuilder.index(indexNames);
+    }
 
     return searchBuilder.build();
   }
 
+  /**
+   * Builds the {@code _source} filtering for the include and exclude fields of the
+   * {@link SearchCriteria}, so hits only carry the fields a caller needs.  Fields are proto field
+   * names, nested fields joined with dots, and may use wildcards such as {@code geometry.*}.
+   *
+   * @param searchCriteria SearchCriteria
+   * @return SourceConfig, or null when the criteria returns whole documents
+   */
+  public SourceConfig sourceConfig(SearchCriteria searchCriteria) {
+    if (searchCriteria.getIncludeFieldsCount() == 0
+        && searchCriteria.getExcludeFieldsCount() == 0) {
+      return null;
+    }
+
+    return SourceConfig.of(s -> s.filter(f -> f
+        .includes(searchCriteria.getIncludeFieldsList())
+        .excludes(searchCriteria.getExcludeFieldsList())));
+  }
+
+  /**
+   * Requests the docvalue fields of the {@link SearchCriteria} and turns off {@code _source}.
+   * Doc values are already columnar and typed, so narrow reads of keyword, numeric and date fields
+   * skip loading and parsing each document's source.  Hits are decoded from their fields by
+   * {@link ResponseUtils#getBuilderFromHit}.
+   *
+   * @param searchCriteria SearchCriteria
+   * @param searchBuilder  SearchRequest.Builder
+   */
+  public void setDocValueFields(SearchCriteria searchCriteria,
+                                SearchRequest.Builder searchBuilder) {
+    List<FieldAndFormat> fields = new ArrayList<>();
+
+    for (String field : searchCriteria.getDocvalueFieldsList()) {
+      fields.add(FieldAndFormat.of(f -> f.field(field)));
+    }
+
+    searchBuilder.docvalueFields(fields).source(s -> s.fetch(false));
+  }
+
+  /**
+   * Adds the {@code _shard_doc} sort, which makes the sort values of every hit in a point in time
+   * unique, so {@code search_after} pages neither skip nor repeat hits with equal sort values.
+   *
+   * @param searchBuilder SearchRequest.Builder with a point in time
+   */
+  public void addTiebreaker(SearchRequest.Builder searchBuilder) {
+    searchBuilder.sort(s -> s.field(f -> f.field(SHARD_DOC).order(SortOrder.Asc)));
+  }
+
+  /**
+   * Takes in an indexName and {@link AggregationCriteria} to construct a {@code size: 0}
+   * SearchRequest computing only the aggregations.  Decode the response with
+   * {@link AggregationUtils#getAggregationResponse}.
+   *
+   * @param indexName           String name of the index
+   * @param aggregationCriteria AggregationCriteria Proto used to construct the SearchRequest
+   * @return SearchRequest used by elasticsearch service
+   */
+  public SearchRequest buildAggregationRequest(String indexName,
+                                               AggregationCriteria aggregationCriteria) {
+    var searchCriteria = SearchCriteria.newBuilder()
+        .addAllSearchCondition(aggregationCriteria.getSearchConditionList())
+        .build();
+
+    return new SearchRequest.Builder()
+        .index(indexName)
+        .query(buildQuery(searchCriteria))
+        .size(0)
+        .aggregations(AggregationUtils.buildAggregations(aggregationCriteria.getAggregationList()))
+        .build();
+  }
+
   /**
    * Takes {@link SearchCriteria} and {@link SearchRequest.Builder} adding any
    * {@link SortingCriteria} to the SearchSourceBuilder.
@@ -301,33 +457,87 @@ public class RequestBuilder {
 
   /**
    * Takes {@link Pagination} and {@link SearchRequest.Builder} to create and add pagination to the
-   * SearchSourceBuilder.
+   * SearchSourceBuilder.  Search_after pagination resumes after the sort values held in its
+   * cursor rather than skipping {@code from} hits.
    *
    * @param pagination Pagination
    * @param builder    SearchSourceBuilder
    */
   public void setPagination(Pagination pagination, SearchRequest.Builder builder) {
+    setPagination(pagination, builder, pitKeepAlive);
+  }
+
+  /**
+   * Takes {@link Pagination} and {@link SearchRequest.Builder} to create and add pagination to the
+   * SearchSourceBuilder, keeping its point in time, if any, alive for the given time.
+   *
+   * @param pagination   Pagination
+   * @param builder      SearchSourceBuilder
+   * @param pitKeepAlive String Elasticsearch time value to keep the point in time alive for
+   */
+  public void setPagination(Pagination pagination, SearchRequest.Builder builder,
+                            String pitKeepAlive) {
     var size = pagination.getSize();
     var from = pagination.getFrom();
-    var pit = pagination.getCursor();
+    var cursor = pagination.getCursor();
+    var pit = cursor;
 
     if (size == -1) {
       size = 0;
     } else if (size == 0) {
-      size = 10;
+      size = DEFAULT_PAGE_SIZE;
     }
 
     builder.size(size);
-    if (pit.isEmpty()) {
+
+    if (CursorUtils.isSearchAfterCursor(cursor)) {
+      var pageCursor = CursorUtils.decode(cursor);
+      pit = pageCursor.getPitId();
+
+      if (pageCursor.getSearchAfterCount() > 0) {
+        builder.searchAfter(pageCursor.getSearchAfterList());
+      }
+    } else if (pit.isEmpty() && !pagination.getSearchAfter()) {
       builder.from(Math.max(from, 0));
-    } else {
-      builder.pit(p -> p.id(pit).keepAlive(t -> t.time(PIT_KEEP_ALIVE)));
+    }
+
+    if (!pit.isEmpty()) {
+      var pitId = pit;
+      builder.pit(p -> p.id(pitId).keepAlive(t -> t.time(pitKeepAlive)));
+    }
+
+    setTrackTotalHits(pagination, builder);
+  }
+
+  /**
+   * Maps the {@link TotalHitsPolicy} of the {@link Pagination} to {@code track_total_hits}.  A
+   * bounded policy without a bound counts up to {@value #DEFAULT_TOTAL_HITS_BOUND} hits.
+   *
+   * @param pagination Pagination
+   * @param builder    SearchSourceBuilder
+   */
+  public void setTrackTotalHits(Pagination pagination, SearchRequest.Builder builder) {
+    switch (pagination.getTotalHitsPolicy()) {
+      case TOTAL_HITS_EXACT:
+        builder.trackTotalHits(t -> t.enabled(true));
+        break;
+      case TOTAL_HITS_BOUNDED:
+        var bound = pagination.getTotalHitsBound() > 0
+            ? pagination.getTotalHitsBound() : DEFAULT_TOTAL_HITS_BOUND;
+        builder.trackTotalHits(t -> t.count(bound));
+        break;
+      case TOTAL_HITS_OFF:
+        builder.trackTotalHits(t -> t.enabled(false));
+        break;
+      default:
+        break;
     }
   }
 
   /**
    * Used to produce a query from the provided
-   * {@link SearchCriteria}.
+   * {@link SearchCriteria}.  Queries are cached by their search conditions, see
+   * {@link #setQueryCacheSize(long)}.
    *
    * <pre>{@code {
    *   "from": 0,
@@ -374,6 +584,23 @@ public class RequestBuilder {
    * @return Query
    */
   public Query buildQuery(SearchCriteria searchCriteria) {
+    // Only the search conditions make up the query, so pagination, sorting and fields are left
+    // out of the key.  Built queries are immutable and safe to share between requests.
+    SearchCriteria key = SearchCriteria.newBuilder()
+        .addAllSearchCondition(searchCriteria.getSearchConditionList())
+        .build();
+    Cache<SearchCriteria, Query> cache = queryCache;
+    Query query = cache.getIfPresent(key);
+
+    if (query == null) {
+      query = compileQuery(key);
+      cache.put(key, query);
+    }
+
+    return query;
+  }
+
+  private Query compileQuery(SearchCriteria searchCriteria) {
     Query.Builder queryBuilder = new Query.Builder();
     List<QueryObject> queryObjects = createQueryObjects(searchCriteria);
 
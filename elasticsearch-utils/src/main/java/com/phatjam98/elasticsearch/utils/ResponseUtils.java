@@ -2,14 +2,33 @@ package com.phatjam98.elasticsearch.utils;
 
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.TotalHitsRelation;
+import co.elastic.clients.json.JsonData;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.GeneratedMessageV3;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
 import com.google.protobuf.util.JsonFormat;
+import com.phatjam98.elasticsearch.utils.ProtoCodecRegistry.FieldPlan;
+import com.phatjam98.elasticsearch.utils.ProtoCodecRegistry.Kind;
 import com.phatjam98.protos.service.protos.Pagination;
 import com.phatjam98.protos.service.protos.SearchCriteria;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.elasticsearch.search.SearchHit;
 import org.slf4j.Logger;
@@ -22,19 +41,35 @@ public class ResponseUtils {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ResponseUtils.class);
 
+  /**
+   * Default page size from which {@link #decodeHits(List, Supplier)} decodes in parallel.
+   */
+  public static final int DEFAULT_PARALLEL_THRESHOLD = 256;
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final Pattern EPOCH_SECONDS = Pattern.compile("-?\\d+(\\.\\d+)?");
+  private static final int BUFFER_SIZE = 8 * 1024;
+  private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+  private static final ThreadLocal<ReusableByteArrayOutputStream> BUFFERS =
+      ThreadLocal.withInitial(() -> new ReusableByteArrayOutputStream(BUFFER_SIZE));
+
   private ResponseUtils() {
   }
 
   /**
    * Takes {@link SearchCriteria} and {@link SearchResponse} to construct the new {@link Pagination}
-   * for the SearchResponse.
+   * for the SearchResponse.  When the search stopped counting early, the total is a lower bound and
+   * {@code total_is_lower_bound} is set.  Without tracked totals the lower bound is the number of
+   * hits up to the end of this page.  Search_after pages get a cursor holding the sort values of
+   * their last hit, which requests the next page, unless they are short of their size and so
+   * the last page.
    *
    * @param request ServiceRequest
    * @param response SearchResponse
    * @return Pagination
    */
   public static Pagination getPagination(SearchCriteria request,
-                                         SearchResponse<Map<String, Object>> response) {
+                                         SearchResponse<?> response) {
     var paginationBuilder = Pagination.newBuilder();
 
     var from = request.getPagination().getFrom();
@@ -42,15 +77,34 @@ public class ResponseUtils {
     if (!response.hits().hits().isEmpty()) {
       var totalHits = response.hits().total();
       var size = response.hits().hits().size();
-      int totalHitsCount = totalHits == null ? 0 : (int) totalHits.value();
-      paginationBuilder.setTotal(totalHitsCount).setSize(size);
+
+      if (totalHits == null) {
+        paginationBuilder.setTotal(Math.max(from, 0) + size).setTotalIsLowerBound(true);
+      } else {
+        paginationBuilder.setTotal((int) Math.min(totalHits.value(), Integer.MAX_VALUE))
+            .setTotalIsLowerBound(totalHits.relation() == TotalHitsRelation.Gte
+                || totalHits.value() > Integer.MAX_VALUE);
+      }
+
+      paginationBuilder.setSize(size);
     } else {
       paginationBuilder.setTotal(0).setSize(0);
     }
 
     var pit = response.pitId();
+    var hits = response.hits().hits();
+    var lastSort = hits.isEmpty() ? List.<String>of() : hits.get(hits.size() - 1).sort();
+    var requested = request.getPagination().getSize();
+    var lastPage = hits.size() < (requested == 0 ? RequestBuilder.DEFAULT_PAGE_SIZE : requested);
 
-    if (pit == null) {
+    if (CursorUtils.isSearchAfter(request.getPagination())) {
+      // The last page has no cursor, so it cannot be mistaken for the PIT id of a first page.
+      paginationBuilder.setSearchAfter(true);
+
+      if (!lastPage && !lastSort.isEmpty()) {
+        paginationBuilder.setCursor(CursorUtils.encode(pit, lastSort));
+      }
+    } else if (pit == null) {
       paginationBuilder.setFrom(from);
     } else {
       paginationBuilder.setCursor(pit);
@@ -63,7 +117,9 @@ public class ResponseUtils {
    * This is a generic helper to convert a {@link SearchHit} to the provided Protobuf Builder.  This
    * will work with any class that extends {@link GeneratedMessageV3.Builder}.  The reason we
    * return a Builder rather than the Message is we can still add and manipulate the builder before
-   * we need to finalize the Message.
+   * we need to finalize the Message.  Hits searched with a protobuf class through a mapper using
+   * {@link ProtoJacksonModule} are already decoded and are merged as-is.  Hits without a source
+   * are built from their docvalue fields, see {@link #getBuilderFromFields}.
    *
    * @param hit SearchHit
    * @param builder GeneratedMessageV3.Builder
@@ -73,17 +129,208 @@ public class ResponseUtils {
   public static <T extends GeneratedMessageV3.Builder> T getBuilderFromHit(@NonNull Hit<?> hit,
                                                                            T builder) {
     if (hit.source() == null) {
+      return getBuilderFromFields(hit, builder);
+    }
+
+    if (hit.source() instanceof Message) {
+      builder.mergeFrom((Message) hit.source());
       return builder;
     }
 
+    ReusableByteArrayOutputStream buffer = BUFFERS.get();
+
     try {
-      var mapper = new ObjectMapper();
-      var str = mapper.writeValueAsString(hit.source());
-      ProtoJsonUtils.convertJsonToProto(str, builder);
+      buffer.reset();
+      MAPPER.writeValue(buffer, hit.source());
+      ProtoJsonReader.merge(buffer.buffer(), 0, buffer.size(), builder);
     } catch (JsonProcessingException e) {
       LOGGER.error("Error parsing JSON: {}", e.getMessage());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      buffer.trim(BUFFER_SIZE, MAX_RETAINED_BUFFER_SIZE);
+    }
+
+    return builder;
+  }
+
+  /**
+   * Builds the Protobuf Builder from the docvalue fields of the hit.  Each field is a proto field
+   * name, nested fields joined with dots; repeated fields take every value and singular fields the
+   * first.  Values are converted from the typed doc value arrays to the field's type through its
+   * {@link ProtoCodecRegistry.FieldPlan}, without encoding them as JSON again.  Fields that do not
+   * resolve to a scalar, enum or Timestamp proto field are skipped.
+   *
+   * @param hit     Hit searched with docvalue fields
+   * @param builder GeneratedMessageV3.Builder
+   * @param <T>     Type of Protobuf Builder to build from the Hit
+   * @return GeneratedMessageV3.Builder
+   */
+  public static <T extends GeneratedMessageV3.Builder> T getBuilderFromFields(@NonNull Hit<?> hit,
+                                                                              T builder) {
+    for (Map.Entry<String, JsonData> field : hit.fields().entrySet()) {
+      JsonValue values = field.getValue().toJson();
+
+      if (values.getValueType() == JsonValue.ValueType.ARRAY && !values.asJsonArray().isEmpty()) {
+        setField(builder, field.getKey(), values.asJsonArray());
+      }
     }
 
     return builder;
   }
-}
\ No newline at end of file
+
+  private static void setField(Message.Builder builder, String path, JsonArray values) {
+    String[] names = path.split("\\.");
+    Message.Builder target = builder;
+
+    for (int i = 0; i < names.length - 1; i++) {
+      FieldPlan parent = ProtoCodecRegistry.plan(target.getDescriptorForType()).field(names[i]);
+
+      if (parent == null || parent.isRepeated() || parent.kind() != Kind.MESSAGE) {
+        return;
+      }
+
+      target = target.getFieldBuilder(parent.descriptor());
+    }
+
+    FieldPlan field = ProtoCodecRegistry.plan(target.getDescriptorForType())
+        .field(names[names.length - 1]);
+
+    if (field == null || (field.kind() != Kind.SCALAR && field.kind() != Kind.ENUM
+        && field.kind() != Kind.TIMESTAMP)) {
+      return;
+    }
+
+    if (field.isRepeated()) {
+      for (JsonValue value : values) {
+        Object converted = docValue(field, value);
+
+        if (converted != null) {
+          target.addRepeatedField(field.descriptor(), converted);
+        }
+      }
+    } else {
+      Object converted = docValue(field, values.get(0));
+
+      if (converted != null) {
+        target.setField(field.descriptor(), converted);
+      }
+    }
+  }
+
+  /**
+   * Converts one doc value to the Java type protobuf uses for the field.  Dates are formatted
+   * strings or epoch seconds, as numbers or as strings with an epoch_second format.  Keywords are
+   * strings and numeric fields are numbers, but a numeric string or a number for a string field is
+   * accepted too.
+   */
+  private static Object docValue(FieldPlan field, JsonValue value) {
+    if (value.getValueType() == JsonValue.ValueType.NULL) {
+      return null;
+    }
+
+    FieldDescriptor descriptor = field.descriptor();
+
+    try {
+      if (field.kind() == Kind.TIMESTAMP) {
+        return value instanceof JsonNumber || EPOCH_SECONDS.matcher(text(value)).matches()
+            ? ProtoJsonReader.epochSeconds(number(value))
+            : ProtoJsonReader.parseTimestamp(text(value));
+      }
+
+      switch (descriptor.getType()) {
+        case INT32:
+        case SINT32:
+        case SFIXED32:
+        case UINT32:
+        case FIXED32:
+          return number(value).intValue();
+        case INT64:
+        case SINT64:
+        case SFIXED64:
+        case UINT64:
+        case FIXED64:
+          return number(value).longValue();
+        case FLOAT:
+          return number(value).floatValue();
+        case DOUBLE:
+          return number(value).doubleValue();
+        case BOOL:
+          return value.getValueType() == JsonValue.ValueType.TRUE
+              || Boolean.parseBoolean(text(value));
+        case STRING:
+          return text(value);
+        case BYTES:
+          return ProtoJsonReader.readBytes(text(value));
+        case ENUM:
+          return value instanceof JsonNumber
+              ? descriptor.getEnumType().findValueByNumber(((JsonNumber) value).intValue())
+              : descriptor.getEnumType().findValueByName(text(value));
+        default:
+          return null;
+      }
+    } catch (InvalidProtocolBufferException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static BigDecimal number(JsonValue value) {
+    return value instanceof JsonNumber
+        ? ((JsonNumber) value).bigDecimalValue() : new BigDecimal(text(value).trim());
+  }
+
+  private static String text(JsonValue value) {
+    return value instanceof JsonString ? ((JsonString) value).getString() : value.toString();
+  }
+
+  /**
+   * Decodes a page of hits into builders, preserving hit order.  Pages of at least
+   * {@value #DEFAULT_PARALLEL_THRESHOLD} hits are decoded in parallel on the common
+   * {@link ForkJoinPool}.
+   *
+   * @param hits            hits to decode
+   * @param builderSupplier creates an empty builder for each hit
+   * @param <T>             Type of Protobuf Builder to build from the Hits
+   * @return DecodedHits holding one builder per hit
+   * @see #getBuilderFromHit(Hit, GeneratedMessageV3.Builder)
+   */
+  public static <T extends GeneratedMessageV3.Builder> DecodedHits<T> decodeHits(
+      @NonNull List<? extends Hit<?>> hits, Supplier<T> builderSupplier) {
+    return decodeHits(hits, builderSupplier, ForkJoinPool.commonPool(),
+        DEFAULT_PARALLEL_THRESHOLD);
+  }
+
+  /**
+   * Decodes a page of hits into builders, preserving hit order.  Pages with at least
+   * parallelThreshold hits are split across the given pool; smaller pages are decoded on the
+   * calling thread, where the fork/join overhead would outweigh the decoding.
+   *
+   * @param hits              hits to decode
+   * @param builderSupplier   creates an empty builder for each hit
+   * @param pool              ForkJoinPool to decode large pages on
+   * @param parallelThreshold minimum number of hits to decode in parallel
+   * @param <T>               Type of Protobuf Builder to build from the Hits
+   * @return DecodedHits holding one builder per hit
+   */
+  public static <T extends GeneratedMessageV3.Builder> DecodedHits<T> decodeHits(
+      @NonNull List<? extends Hit<?>> hits, Supplier<T> builderSupplier, ForkJoinPool pool,
+      int parallelThreshold) {
+    long start = System.nanoTime();
+    boolean parallel = hits.size() >= parallelThreshold && pool.getParallelism() > 1;
+    List<T> builders;
+
+    if (parallel) {
+      builders = pool.submit(() -> hits.parallelStream()
+          .map(hit -> getBuilderFromHit(hit, builderSupplier.get()))
+          .collect(Collectors.toList())).join();
+    } else {
+      builders = new ArrayList<>(hits.size());
+
+      for (Hit<?> hit : hits) {
+        builders.add(getBuilderFromHit(hit, builderSupplier.get()));
+      }
+    }
+
+    return new DecodedHits<>(builders, Duration.ofNanos(System.nanoTime() - start), parallel);
+  }
+}
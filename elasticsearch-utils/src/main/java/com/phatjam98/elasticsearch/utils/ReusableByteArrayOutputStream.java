@@ -0,0 +1,47 @@
+package com.phatjam98.elasticsearch.utils;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * ByteArrayOutputStream that exposes its backing array, so what was written can be parsed or
+ * sent without the copy {@link #toByteArray()} makes.  The array is only valid until the next
+ * write, since writes may replace it with a larger one.
+ */
+public class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+
+  public ReusableByteArrayOutputStream(int size) {
+    super(size);
+  }
+
+  /**
+   * Returns the backing array.  Only the first {@link #size()} bytes are valid.
+   *
+   * @return backing array
+   */
+  public byte[] buffer() {
+    return buf;
+  }
+
+  /**
+   * Returns the length of the backing array.
+   *
+   * @return capacity in bytes
+   */
+  public int capacity() {
+    return buf.length;
+  }
+
+  /**
+   * Resets the stream and replaces the backing array with one of the given size if it has grown
+   * past maxRetained, so an unusually large document is not held on to.
+   *
+   * @param initialSize size of the replacement array
+   * @param maxRetained largest array to keep
+   */
+  public void trim(int initialSize, int maxRetained) {
+    if (buf.length > maxRetained) {
+      buf = new byte[initialSize];
+      count = 0;
+    }
+  }
+}
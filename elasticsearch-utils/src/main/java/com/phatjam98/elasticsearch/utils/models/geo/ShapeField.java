@@ -6,8 +6,8 @@ import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch._types.query_dsl.QueryBuilders;
 import co.elastic.clients.json.JsonData;
 import com.phatjam98.core.common.proto.GeoBufProtos;
+import com.phatjam98.elasticsearch.utils.GeoJsonEncoder;
 import com.phatjam98.elasticsearch.utils.models.Field;
-import com.phatjam98.geobuf.utils.GeobufUtils;
 import com.phatjam98.protos.service.protos.SearchOperationType;
 import java.util.Objects;
 import org.slf4j.Logger;
@@ -30,16 +30,13 @@ public class ShapeField extends Field {
   @Override
   public Query queryBuilder() {
     GeoBufProtos.Data geobufData = (GeoBufProtos.Data) getValue().getValue();
-    GeobufUtils geobufUtils = new GeobufUtils(geobufData);
     Query query = null;
 
     var geoShapeQueryBuilder = QueryBuilders.geoShape();
     geoShapeQueryBuilder.field(getName());
-    GeoShapeFieldQuery.Builder shapeBuilder = new GeoShapeFieldQuery.Builder();
-    shapeBuilder.shape(JsonData.fromJson(geobufUtils.getGeoJson()));
 
     var shapeFieldBuilder = new GeoShapeFieldQuery.Builder();
-    shapeFieldBuilder.shape(JsonData.fromJson(geobufUtils.getGeoJson()));
+    shapeFieldBuilder.shape(JsonData.of(GeoJsonEncoder.shape(geobufData)));
     addOpType(shapeFieldBuilder);
 
     geoShapeQueryBuilder.shape(shapeFieldBuilder.build());
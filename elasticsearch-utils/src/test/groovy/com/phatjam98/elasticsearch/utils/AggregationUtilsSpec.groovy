@@ -0,0 +1,145 @@
+package com.phatjam98.elasticsearch.utils
+
+import co.elastic.clients.elasticsearch.core.SearchResponse
+import co.elastic.clients.json.JsonpDeserializer
+import com.phatjam98.protos.service.protos.Aggregation
+import com.phatjam98.protos.service.protos.AggregationCriteria
+import com.phatjam98.protos.service.protos.AggregationRange
+import com.phatjam98.protos.service.protos.AggregationResponse
+import com.phatjam98.protos.service.protos.AggregationResult
+import com.phatjam98.protos.service.protos.Bucket
+import com.phatjam98.protos.service.protos.BucketResult
+import com.phatjam98.protos.service.protos.CardinalityAggregation
+import com.phatjam98.protos.service.protos.CompositeAggregation
+import com.phatjam98.protos.service.protos.CompositeSource
+import com.phatjam98.protos.service.protos.RangeAggregation
+import com.phatjam98.protos.service.protos.StatsAggregation
+import com.phatjam98.protos.service.protos.TermsAggregation
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class AggregationUtilsSpec extends Specification {
+    void setup() {
+    }
+
+    void cleanup() {
+    }
+
+    def "buildAggregations with sub aggregations"() {
+        given:
+        var aggregation = Aggregation.newBuilder()
+                .setName("by_region")
+                .setTerms(TermsAggregation.newBuilder().setField("region").setSize(5))
+                .addSubAggregation(Aggregation.newBuilder()
+                        .setName("scores")
+                        .setStats(StatsAggregation.newBuilder().setField("score")))
+                .build()
+
+        when:
+        var built = AggregationUtils.buildAggregations([aggregation])
+
+        then:
+        built.keySet() == ["by_region"] as Set
+        built.get("by_region").terms().field() == "region"
+        built.get("by_region").terms().size() == 5
+        built.get("by_region").aggregations().get("scores").stats().field() == "score"
+    }
+
+    def "buildAggregations rejects an aggregation without a type"() {
+        when:
+        AggregationUtils.buildAggregations([Aggregation.newBuilder().setName("empty").build()])
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "getAggregationResponse decodes typed aggregates"() {
+        given:
+        var criteria = AggregationCriteria.newBuilder()
+                .addAggregation(Aggregation.newBuilder()
+                        .setName("by_region")
+                        .setTerms(TermsAggregation.newBuilder().setField("region"))
+                        .addSubAggregation(Aggregation.newBuilder()
+                                .setName("scores")
+                                .setStats(StatsAggregation.newBuilder().setField("score"))))
+                .addAggregation(Aggregation.newBuilder()
+                        .setName("empty")
+                        .setStats(StatsAggregation.newBuilder().setField("missing")))
+                .addAggregation(Aggregation.newBuilder()
+                        .setName("pages")
+                        .setComposite(CompositeAggregation.newBuilder().setSize(2)
+                                .addSource(CompositeSource.newBuilder().setName("id")
+                                        .setTerms(TermsAggregation.newBuilder().setField("id")))))
+                .addAggregation(Aggregation.newBuilder()
+                        .setName("by_date")
+                        .setRange(RangeAggregation.newBuilder().setField("created_at")
+                                .addRange(AggregationRange.newBuilder().setKey("old").setTo(1600000000000))))
+                .build()
+        var json = '{"took":1,"timed_out":false,"_shards":{"total":1,"successful":1,"skipped":0,"failed":0},' +
+                '"hits":{"total":{"value":3,"relation":"eq"},"max_score":null,"hits":[]},"aggregations":{' +
+                '"sterms#by_region":{"doc_count_error_upper_bound":0,"sum_other_doc_count":0,"buckets":[' +
+                '{"key":"west","doc_count":2,"stats#scores":{"count":2,"min":1.0,"max":3.0,"avg":2.0,"sum":4.0}}]},' +
+                '"stats#empty":{"count":0,"min":null,"max":null,"avg":null,"sum":0.0},' +
+                '"composite#pages":{"after_key":{"id":2},"buckets":[' +
+                '{"key":{"id":1},"doc_count":1},{"key":{"id":2},"doc_count":2}]},' +
+                '"date_range#by_date":{"buckets":[{"key":"old","to":1.6E12,"to_as_string":"2020-09-13T12:26:40.000Z","doc_count":3}]}}}'
+        var mapper = ProtoJacksonModule.jsonpMapper()
+        var parser = mapper.jsonProvider().createParser(new StringReader(json))
+        SearchResponse<Map> response = SearchResponse.createSearchResponseDeserializer(
+                JsonpDeserializer.of(Map.class)).deserialize(parser, mapper)
+
+        when:
+        var decoded = AggregationUtils.getAggregationResponse(criteria, response)
+        var byRegion = decoded.getAggregation(0).getBuckets().getBucket(0)
+        var empty = decoded.getAggregation(1).getStats()
+        var pages = decoded.getAggregation(2).getBuckets()
+        var byDate = decoded.getAggregation(3).getBuckets()
+
+        then:
+        decoded.getTotal() == 3
+        byRegion.getKey() == "west"
+        byRegion.getDocCount() == 2
+        byRegion.getSubAggregation(0).getStats().getMax() == 3.0
+        empty.getCount() == 0
+        !empty.hasMin() && !empty.hasMax() && !empty.hasAvg()
+        pages.getBucketList()*.getKey() == ["1", "2"]
+        pages.getBucket(1).getCompositeKeyMap() == ["id": "2"]
+        !pages.getAfterKey().isEmpty()
+        byDate.getBucketList()*.getKey() == ["old"]
+        byDate.getBucket(0).getDocCount() == 3
+    }
+
+    @Unroll
+    def "nextPage #testCase"() {
+        given:
+        var composite = Aggregation.newBuilder()
+                .setName("pages")
+                .setComposite(CompositeAggregation.newBuilder().setSize(2)
+                        .addSource(CompositeSource.newBuilder().setName("id")
+                                .setTerms(TermsAggregation.newBuilder().setField("id"))))
+                .build()
+        var cardinality = Aggregation.newBuilder()
+                .setName("distinct")
+                .setCardinality(CardinalityAggregation.newBuilder().setField("id"))
+                .build()
+        var criteria = AggregationCriteria.newBuilder().addAggregation(composite).addAggregation(cardinality).build()
+        var buckets = BucketResult.newBuilder().setAfterKey(afterKey)
+        (1..bucketCount).each { buckets.addBucket(Bucket.newBuilder().setKey(String.valueOf(it))) }
+        var response = AggregationResponse.newBuilder()
+                .addAggregation(AggregationResult.newBuilder().setName("pages").setBuckets(buckets))
+                .addAggregation(AggregationResult.newBuilder().setName("distinct").setCardinality(4))
+                .build()
+
+        when:
+        var next = AggregationUtils.nextPage(criteria, response)
+
+        then:
+        next?.getAggregationList()*.getName() == expectedNames
+        next?.getAggregation(0)?.getComposite()?.getAfter() == expectedAfter
+
+        where:
+        bucketCount | afterKey | expectedNames | expectedAfter | testCase
+        2           | "abc"    | ["pages"]     | "abc"         | "full page"
+        1           | "abc"    | null          | null          | "last page"
+    }
+}
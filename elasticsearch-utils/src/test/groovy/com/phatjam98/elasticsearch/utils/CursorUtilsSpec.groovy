@@ -0,0 +1,50 @@
+package com.phatjam98.elasticsearch.utils
+
+import com.phatjam98.protos.service.protos.Pagination
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class CursorUtilsSpec extends Specification {
+    void setup() {
+    }
+
+    void cleanup() {
+    }
+
+    @Unroll
+    def "encode and decode #testCase"() {
+        when:
+        var cursor = CursorUtils.encode(pitId, sortValues)
+        var decoded = CursorUtils.decode(cursor)
+
+        then:
+        CursorUtils.isSearchAfterCursor(cursor)
+        decoded.getPitId() == (pitId ?: "")
+        decoded.getSearchAfterList() == sortValues
+
+        where:
+        pitId   | sortValues           | testCase
+        "pit-1" | ["1.5", "abc", "42"] | "with pit"
+        null    | ["7"]                | "without pit"
+    }
+
+    @Unroll
+    def "getPitId #testCase"() {
+        expect:
+        CursorUtils.getPitId(Pagination.newBuilder().setCursor(cursor).build()) == expected
+
+        where:
+        cursor                               | expected  | testCase
+        ""                                   | ""        | "no cursor"
+        "rawPit"                             | "rawPit"  | "pit cursor"
+        CursorUtils.encode("somePit", ["1"]) | "somePit" | "search_after cursor"
+    }
+
+    def "decode rejects invalid cursors"() {
+        when:
+        CursorUtils.decode(CursorUtils.PREFIX + "!!not base64!!")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,42 @@
+package com.phatjam98.elasticsearch.utils
+
+import co.elastic.clients.json.JsonData
+import co.elastic.clients.json.jackson.JacksonJsonpMapper
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.phatjam98.core.common.proto.GeoBufProtos
+import com.phatjam98.geobuf.utils.GeobufUtils
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class GeoJsonEncoderSpec extends Specification {
+    static final ObjectMapper MAPPER = new ObjectMapper()
+
+    @Unroll
+    def "toGeoJson matches GeobufUtils for #type"() {
+        given:
+        var data = GeoBufProtos.Data.parseFrom(new GeobufUtils(geoJson).getGeobuf())
+
+        expect:
+        MAPPER.readValue(GeoJsonEncoder.toGeoJson(data), Map) == MAPPER.readValue(new GeobufUtils(data).getGeoJson(), Map)
+
+        where:
+        type                 | geoJson
+        "Point"              | '{"type":"Point","coordinates":[-115.15,36.1]}'
+        "MultiPoint"         | '{"type":"MultiPoint","coordinates":[[-115.1,36.1],[-122.36,37.83]]}'
+        "LineString"         | '{"type":"LineString","coordinates":[[-122.349491,37.87419],[-119.129456,37.162987],[-115.089264,36.169479]]}'
+        "Polygon"            | '{"type":"Polygon","coordinates":[[[-115.3,36.15],[-115.3,36.05],[-115.15,36.05],[-115.15,36.15],[-115.3,36.15]],[[-115.25,36.1],[-115.2,36.1],[-115.2,36.08],[-115.25,36.1]]]}'
+        "MultiLineString"    | '{"type":"MultiLineString","coordinates":[[[1.5,2.5],[3.5,4.5]],[[-1.5,-2.5],[-3.5,-4.5],[0,0]]]}'
+        "MultiPolygon"       | '{"type":"MultiPolygon","coordinates":[[[[0,0],[1,0],[1,1],[0,0]]],[[[10,10],[11,10],[11,11],[10,10]],[[10.2,10.1],[10.5,10.1],[10.5,10.4],[10.2,10.1]]]]}'
+        "GeometryCollection" | '{"type":"GeometryCollection","geometries":[{"type":"Point","coordinates":[1,2]},{"type":"LineString","coordinates":[[1,2],[3,4]]}]}'
+    }
+
+    def "shape is encoded once and serialized as raw GeoJSON"() {
+        given:
+        var data = GeoBufProtos.Data.parseFrom(new GeobufUtils('{"type":"Point","coordinates":[-115.15,36.1]}').getGeobuf())
+        var shape = GeoJsonEncoder.shape(data)
+
+        expect:
+        GeoJsonEncoder.shape(GeoBufProtos.Data.parseFrom(data.toByteArray())).is(shape)
+        JsonData.of(shape).toJson(new JacksonJsonpMapper()).toString() == JsonData.fromJson(shape.toJson()).toJson().toString()
+    }
+}
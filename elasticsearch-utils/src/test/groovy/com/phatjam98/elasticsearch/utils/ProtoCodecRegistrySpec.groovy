@@ -0,0 +1,42 @@
+package com.phatjam98.elasticsearch.utils
+
+import com.google.protobuf.Timestamp
+import com.thepublichealthco.protos.MappingTest
+import spock.lang.Specification
+
+class ProtoCodecRegistrySpec extends Specification {
+
+    def "plan is compiled once per descriptor"() {
+        expect:
+        ProtoCodecRegistry.plan(MappingTest.class).is(ProtoCodecRegistry.plan(MappingTest.getDescriptor()))
+    }
+
+    def "plan fields are in field number order and found by proto or json name"() {
+        given:
+        var plan = ProtoCodecRegistry.plan(MappingTest.class)
+        var numbers = plan.fields()*.descriptor()*.number
+
+        expect:
+        numbers == numbers.toSorted()
+        plan.field("nested_value").is(plan.field("nestedValue"))
+        plan.field("missing") == null
+    }
+
+    def "plan classifies fields"() {
+        given:
+        var plan = ProtoCodecRegistry.plan(MappingTest.class)
+
+        expect:
+        plan.kind() == ProtoCodecRegistry.Kind.MESSAGE
+        plan.field("string_value").kind() == ProtoCodecRegistry.Kind.SCALAR
+        plan.field("enum_value").kind() == ProtoCodecRegistry.Kind.ENUM
+        plan.field("nested_value").kind() == ProtoCodecRegistry.Kind.MESSAGE
+        ProtoCodecRegistry.plan(Timestamp.class).kind() == ProtoCodecRegistry.Kind.TIMESTAMP
+    }
+
+    def "newBuilder creates a builder without reflection"() {
+        expect:
+        ProtoCodecRegistry.newBuilder(MappingTest.class).build() == MappingTest.getDefaultInstance()
+        ProtoCodecRegistry.defaultInstance(MappingTest.class).is(MappingTest.getDefaultInstance())
+    }
+}
@@ -0,0 +1,42 @@
+package com.phatjam98.elasticsearch.utils
+
+import co.elastic.clients.elasticsearch.core.SearchResponse
+import co.elastic.clients.json.JsonpDeserializer
+import com.thepublichealthco.protos.MappingTest
+import spock.lang.Specification
+
+class ProtoJacksonModuleSpec extends Specification {
+
+    def "search responses decode hit sources into protobuf messages"() {
+        given:
+        var proto = MappingTest.newBuilder()
+                .setStringValue("John")
+                .setInt64Value(12L)
+                .setEnumValue(MappingTest.Enum.ONE)
+                .setNestedValue(MappingTest.Nested.newBuilder().setNestedStringValue("nested"))
+                .setId("1")
+                .build()
+        var json = '{"took":1,"timed_out":false,"_shards":{"total":1,"successful":1,"skipped":0,"failed":0},' +
+                '"hits":{"total":{"value":1,"relation":"eq"},"max_score":1.0,' +
+                '"hits":[{"_index":"mapping_test","_id":"1","_score":1.0,"_source":' +
+                ProtoJsonWriter.toJson(proto) + '}]}}'
+        var mapper = ProtoJacksonModule.jsonpMapper()
+        var parser = mapper.jsonProvider().createParser(new StringReader(json))
+
+        when:
+        SearchResponse<MappingTest> response = SearchResponse.createSearchResponseDeserializer(
+                JsonpDeserializer.of(MappingTest.class)).deserialize(parser, mapper)
+
+        then:
+        response.hits().hits()[0].source() == proto
+        ResponseUtils.getBuilderFromHit(response.hits().hits()[0], MappingTest.newBuilder()).build() == proto
+    }
+
+    def "protobuf messages serialize with ProtoJsonWriter"() {
+        given:
+        var proto = MappingTest.newBuilder().setStringValue("John").setId("1").build()
+
+        expect:
+        ProtoJacksonModule.jsonpMapper().objectMapper().writeValueAsString(proto) == ProtoJsonWriter.toJson(proto)
+    }
+}
@@ -0,0 +1,91 @@
+package com.phatjam98.elasticsearch.utils
+
+import com.google.protobuf.ByteString
+import com.google.protobuf.InvalidProtocolBufferException
+import com.google.protobuf.util.Timestamps
+import com.thepublichealthco.protos.MappingTest
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.time.LocalDateTime
+import java.time.ZoneId
+
+class ProtoJsonReaderSpec extends Specification {
+
+    def "merge reads what ProtoJsonWriter writes"() {
+        given:
+        var proto = MappingTest.newBuilder()
+                .setDoubleValue(1.5)
+                .setFloatValue(0.7f)
+                .setInt64Value(1234567890123L)
+                .setUint64Value(-1L)
+                .setUint32Value(-1)
+                .setInt32Value(-42)
+                .setBoolValue(true)
+                .setStringValue("John")
+                .setEnumValue(MappingTest.Enum.TWO)
+                .setBytesValue(ByteString.copyFromUtf8("bytes"))
+                .setNestedValue(MappingTest.Nested.newBuilder().setNestedStringValue("nested"))
+                .setId("1")
+                .build()
+        var builder = MappingTest.newBuilder()
+
+        when:
+        ProtoJsonReader.merge(ProtoJsonWriter.toJson(proto), builder)
+
+        then:
+        builder.build() == proto
+    }
+
+    def "merge skips unknown fields, unknown enum names and nulls"() {
+        given:
+        var json = '{"unknown":{"deep":[1,2,3]},"enum_value":"THREE","string_value":null,"id":"1"}'
+        var builder = MappingTest.newBuilder()
+
+        when:
+        ProtoJsonReader.merge(json, builder)
+
+        then:
+        builder.build() == MappingTest.newBuilder().setId("1").build()
+    }
+
+    def "merge accepts lowerCamel json names and quoted numbers"() {
+        given:
+        var json = '{"int64Value":"12","int32Value":"3","doubleValue":"NaN"}'
+        var builder = MappingTest.newBuilder()
+
+        when:
+        ProtoJsonReader.merge(json.getBytes("UTF-8"), builder)
+
+        then:
+        builder.getInt64Value() == 12L
+        builder.getInt32Value() == 3
+        builder.getDoubleValue().isNaN()
+    }
+
+    def "merge rejects a scalar where a message is expected"() {
+        when:
+        ProtoJsonReader.merge('{"nested_value":"oops"}', MappingTest.newBuilder())
+
+        then:
+        thrown(InvalidProtocolBufferException)
+    }
+
+    @Unroll
+    def "parseTimestamp #value"() {
+        expect:
+        ProtoJsonReader.parseTimestamp(value) == expected
+
+        where:
+        value                        | expected
+        "2023-10-02T19:33:32Z"       | Timestamps.parse("2023-10-02T19:33:32Z")
+        "2023-10-02T19:33:32.5+01:00" | Timestamps.parse("2023-10-02T18:33:32.5Z")
+        "2023-10-02T19:33:32.819206" | local(LocalDateTime.parse("2023-10-02T19:33:32.819206"))
+        "2023-10-02"                 | local(LocalDateTime.parse("2023-10-02T00:00:00"))
+    }
+
+    def local(LocalDateTime dateTime) {
+        var instant = dateTime.atZone(ZoneId.systemDefault()).toInstant()
+        return Timestamps.fromNanos(instant.getEpochSecond() * 1_000_000_000L + instant.getNano())
+    }
+}
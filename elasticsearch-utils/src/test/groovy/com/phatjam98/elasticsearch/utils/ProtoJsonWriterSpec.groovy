@@ -0,0 +1,107 @@
+package com.phatjam98.elasticsearch.utils
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.google.protobuf.ByteString
+import com.google.protobuf.Descriptors
+import com.google.protobuf.GeneratedMessageV3
+import com.google.protobuf.util.JsonFormat
+import com.phatjam98.core.common.proto.GeoBufProtos
+import com.phatjam98.geobuf.utils.GeobufUtils
+import com.thepublichealthco.protos.GeoMappingTest
+import com.thepublichealthco.protos.MappingTest
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ProtoJsonWriterSpec extends Specification {
+    static final ObjectMapper MAPPER = new ObjectMapper()
+
+    @Unroll
+    def "toJson matches the JsonFormat round trip for #name"() {
+        when:
+        var result = ProtoJsonWriter.toJson(proto)
+
+        then:
+        result == legacyJson(proto)
+
+        where:
+        name       | proto
+        "empty"    | MappingTest.newBuilder().build()
+        "scalars"  | scalars()
+        "unsigned" | MappingTest.newBuilder().setUint32Value(-1).setUint64Value(-1L).setFixed32Value(-2).build()
+        "nan"      | MappingTest.newBuilder().setDoubleValue(Double.NaN).setFloatValue(Float.NEGATIVE_INFINITY).build()
+        "point"    | GeoMappingTest.newBuilder().setId("1").setPoint(geobuf('{"type":"Point","coordinates":[-115.15,36.1]}')).build()
+        "polygon"  | GeoMappingTest.newBuilder().setId("2").setArea(geobuf('{"type":"Polygon","coordinates":[[[-115.3,36.15],[-115.3,36.05],[-115.15,36.05],[-115.15,36.15],[-115.3,36.15]]]}')).build()
+        "nested"   | GeoMappingTest.newBuilder().setId("3")
+                .setPoint(geobuf('{"type":"Point","coordinates":[1.5,-2.25]}'))
+                .setNestedValue(GeoMappingTest.Nested.newBuilder().setName("centroid")
+                        .setCentroid(geobuf('{"type":"MultiPoint","coordinates":[[-115.1,36.1],[-122.36,37.83]]}')))
+                .build()
+    }
+
+    def "toJsonBytes is UTF-8 of toJson"() {
+        given:
+        var proto = scalars()
+
+        expect:
+        new String(ProtoJsonWriter.toJsonBytes(proto), "UTF-8") == ProtoJsonWriter.toJson(proto)
+    }
+
+    def "write leaves the stream open"() {
+        given:
+        var out = new ByteArrayOutputStream()
+
+        when:
+        ProtoJsonWriter.write(scalars(), out)
+        out.write('\n'.bytes)
+
+        then:
+        out.toString("UTF-8").endsWith("}\n")
+    }
+
+    MappingTest scalars() {
+        return MappingTest.newBuilder()
+                .setDoubleValue(1.5)
+                .setFloatValue(0.7f)
+                .setInt64Value(1234567890123L)
+                .setInt32Value(-42)
+                .setSint32Value(7)
+                .setBoolValue(true)
+                .setStringValue("John <\"Bob\">")
+                .setEnumValue(MappingTest.Enum.TWO)
+                .setBytesValue(ByteString.copyFromUtf8("bytes"))
+                .setNestedValue(MappingTest.Nested.newBuilder().setNestedStringValue("nested"))
+                .setId("1")
+                .build()
+    }
+
+    GeoBufProtos.Data geobuf(String geoJson) {
+        return GeoBufProtos.Data.parseFrom(new GeobufUtils(geoJson).getGeobuf())
+    }
+
+    /**
+     * The JSON of the old ProtoJsonUtils.getJsonFromProto: JsonFormat output read into a Map, with
+     * every GeoBuf field replaced by the GeoJSON of GeobufUtils.
+     */
+    String legacyJson(GeneratedMessageV3 proto) {
+        var json = JsonFormat.printer().omittingInsignificantWhitespace().preservingProtoFieldNames().print(proto)
+        Map<String, Object> map = MAPPER.readValue(json, Map<String, Object>.class)
+        inlineGeoJson(proto, map)
+        return MAPPER.writeValueAsString(map)
+    }
+
+    void inlineGeoJson(GeneratedMessageV3 proto, Map<String, Object> json) {
+        for (Descriptors.FieldDescriptor field : proto.getDescriptorForType().getFields()) {
+            if (field.getType() != Descriptors.FieldDescriptor.Type.MESSAGE || field.isRepeated()
+                    || !json.containsKey(field.getName())) {
+                continue
+            }
+
+            if (field.getMessageType() == GeoBufProtos.Data.getDescriptor()) {
+                var geoJson = new GeobufUtils((GeoBufProtos.Data) proto.getField(field)).getGeoJson()
+                json.put(field.getName(), MAPPER.readValue(geoJson, Map<String, Object>.class))
+            } else {
+                inlineGeoJson((GeneratedMessageV3) proto.getField(field), (Map<String, Object>) json.get(field.getName()))
+            }
+        }
+    }
+}
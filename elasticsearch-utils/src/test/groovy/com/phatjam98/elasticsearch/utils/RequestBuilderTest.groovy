@@ -20,6 +20,7 @@ import com.phatjam98.protos.service.protos.SearchCriteria
 import com.phatjam98.protos.service.protos.SearchOperationType
 import com.phatjam98.protos.service.protos.SortingCriteria
 import com.phatjam98.protos.service.protos.SortingOrder
+import com.phatjam98.protos.service.protos.TotalHitsPolicy
 import spock.lang.Specification
 import spock.lang.Unroll
 
@@ -75,6 +76,131 @@ class RequestBuilderTest extends Specification {
         "nested_descending" | "foo.bar"     | SortingOrder.DESC | SortOrder.Desc
     }
 
+    @Unroll
+    def "setPagination track_total_hits #policy"() {
+        given:
+        RequestBuilder requestBuilder = new RequestBuilder()
+        Pagination pagination = Pagination.newBuilder().setSize(5)
+                .setTotalHitsPolicy(policy).setTotalHitsBound(bound).build()
+        SearchRequest.Builder builder = new SearchRequest.Builder().index("foo")
+
+        when:
+        requestBuilder.setPagination(pagination, builder)
+        var trackTotalHits = builder.build().trackTotalHits()
+
+        then:
+        trackTotalHits?.isEnabled() ? trackTotalHits.enabled() == enabled : enabled == null
+        trackTotalHits?.isCount() ? trackTotalHits.count() == count : count == null
+
+        where:
+        policy                             | bound | enabled | count
+        TotalHitsPolicy.TOTAL_HITS_DEFAULT | 0     | null    | null
+        TotalHitsPolicy.TOTAL_HITS_EXACT   | 0     | true    | null
+        TotalHitsPolicy.TOTAL_HITS_BOUNDED | 500   | null    | 500
+        TotalHitsPolicy.TOTAL_HITS_BOUNDED | 0     | null    | 10_000
+        TotalHitsPolicy.TOTAL_HITS_OFF     | 0     | false   | null
+    }
+
+    def "buildRequest search_after cursor"() {
+        given:
+        RequestBuilder requestBuilder = new RequestBuilder()
+        SortingCriteria sortingCriteria = SortingCriteria.newBuilder().setFieldSort(
+                FieldSort.newBuilder().setFieldName("foo").setOrder(SortingOrder.DESC).build()).build()
+        Pagination pagination = Pagination.newBuilder().setSize(5).setFrom(20)
+                .setCursor(CursorUtils.encode("somePit", ["10", "3"])).build()
+        SearchCriteria searchCriteria = SearchCriteria.newBuilder()
+                .addSortingCriteria(sortingCriteria)
+                .setPagination(pagination)
+                .build()
+
+        when:
+        var request = requestBuilder.buildRequest("foo_index", searchCriteria)
+
+        then:
+        request.searchAfter() == ["10", "3"]
+        request.pit().id() == "somePit"
+        request.from() == null
+        request.index().isEmpty()
+        request.sort()*.field()*.field() == ["foo", RequestBuilder.SHARD_DOC]
+    }
+
+    @Unroll
+    def "buildRequest _source filtering #testCase"() {
+        given:
+        RequestBuilder requestBuilder = new RequestBuilder()
+        SearchCriteria searchCriteria = SearchCriteria.newBuilder()
+                .addAllIncludeFields(includes)
+                .addAllExcludeFields(excludes)
+                .build()
+
+        when:
+        var request = requestBuilder.buildRequest("foo_index", searchCriteria)
+
+        then:
+        request.source()?.filter()?.includes() == expectedIncludes
+        request.source()?.filter()?.excludes() == expectedExcludes
+
+        where:
+        includes       | excludes     | expectedIncludes | expectedExcludes | testCase
+        []             | []           | null             | null             | "whole documents"
+        ["id", "name"] | []           | ["id", "name"]   | []               | "includes"
+        []             | ["geometry"] | []               | ["geometry"]     | "excludes"
+    }
+
+    def "buildRequest docvalue_fields"() {
+        given:
+        RequestBuilder requestBuilder = new RequestBuilder()
+        SearchCriteria searchCriteria = SearchCriteria.newBuilder()
+                .addDocvalueFields("id")
+                .addDocvalueFields("score")
+                .build()
+
+        when:
+        var request = requestBuilder.buildRequest("foo_index", searchCriteria)
+
+        then:
+        request.docvalueFields()*.field() == ["id", "score"]
+        !request.source().fetch()
+    }
+
+    def "buildQuery caches queries by search condition"() {
+        given:
+        RequestBuilder requestBuilder = new RequestBuilder()
+        SearchCondition searchCondition = SearchCondition.newBuilder()
+                .addFieldCondition(FieldCondition.newBuilder()
+                        .setOperation(SearchOperationType.EQUALS)
+                        .setField("name")
+                        .setValue(FlatStructProtos.FlatValue.newBuilder().setStringValue("John")))
+                .build()
+        SearchCriteria firstPage = SearchCriteria.newBuilder()
+                .addSearchCondition(searchCondition)
+                .setPagination(Pagination.newBuilder().setSize(5).setFrom(0))
+                .build()
+        SearchCriteria secondPage = firstPage.toBuilder()
+                .setPagination(Pagination.newBuilder().setSize(5).setFrom(5))
+                .build()
+
+        when:
+        var first = requestBuilder.buildQuery(firstPage)
+        var second = requestBuilder.buildQuery(secondPage)
+        var other = requestBuilder.buildQuery(SearchCriteria.getDefaultInstance())
+
+        then:
+        second.is(first)
+        other.isMatchAll()
+        requestBuilder.getQueryCacheStats().hitCount() == 1
+        requestBuilder.getQueryCacheStats().missCount() == 2
+
+        when:
+        requestBuilder.setQueryCacheSize(0)
+        var uncached = requestBuilder.buildQuery(firstPage)
+
+        then:
+        !uncached.is(first)
+        uncached.bool().should().size() == 1
+        requestBuilder.getQueryCacheStats().hitCount() == 0
+    }
+
     @Unroll
     def "AddSorts #sortType"() {
         given:
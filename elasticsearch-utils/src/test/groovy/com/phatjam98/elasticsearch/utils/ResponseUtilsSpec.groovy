@@ -4,10 +4,14 @@ import co.elastic.clients.elasticsearch.core.SearchResponse
 import co.elastic.clients.elasticsearch.core.search.Hit
 import co.elastic.clients.elasticsearch.core.search.HitsMetadata
 import co.elastic.clients.elasticsearch.core.search.TotalHitsRelation
+import co.elastic.clients.json.JsonData
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.google.protobuf.util.JsonFormat
+import com.google.protobuf.util.Timestamps
 import com.phatjam98.protos.service.protos.Pagination
 import com.phatjam98.protos.service.protos.SearchCriteria
+import com.thepublichealthco.protos.GeoMappingTest
+import com.thepublichealthco.protos.MappingTest
 import org.apache.lucene.search.TotalHits
 import org.elasticsearch.search.aggregations.Aggregations
 import org.elasticsearch.search.profile.SearchProfileResults
@@ -15,6 +19,8 @@ import org.elasticsearch.search.suggest.Suggest
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.util.concurrent.ForkJoinPool
+
 class ResponseUtilsSpec extends Specification {
     void setup() {
     }
@@ -65,6 +71,105 @@ class ResponseUtilsSpec extends Specification {
         0    | 0         | 0             | ""       | ""        | "empty"
     }
 
+    @Unroll
+    def "GetPagination lower bound #name"() {
+        given:
+        SearchCriteria searchCriteria = createSearchCriteria(from)
+        SearchResponse searchResponse = new SearchResponse.Builder<Map<String, Object>>()
+                .hits(hmd -> {
+                    hmd.hits(generateSearchHits(10))
+                    relation == null ? hmd : hmd.total(th -> th.relation(relation).value(10_000))
+                })
+                .took(25)
+                .timedOut(false)
+                .shards(s -> s.total(1).successful(1).skipped(0).failed(0))
+                .build()
+
+        when:
+        Pagination pagination = ResponseUtils.getPagination(searchCriteria, searchResponse)
+
+        then:
+        pagination.getTotal() == total
+        pagination.getTotalIsLowerBound() == lowerBound
+
+        where:
+        from | relation              | total  | lowerBound | name
+        0    | TotalHitsRelation.Eq  | 10_000 | false      | "exact"
+        0    | TotalHitsRelation.Gte | 10_000 | true       | "bounded"
+        20   | null                  | 30     | true       | "untracked"
+    }
+
+    def "GetPagination search_after cursor"() {
+        given:
+        SearchCriteria searchCriteria = SearchCriteria.newBuilder()
+                .setPagination(Pagination.newBuilder().setSize(2).setSearchAfter(true)).build()
+        List<Hit> hits = [new Hit.Builder<Map<String, Object>>().id("1").index("stuff").sort(["5", "1"]).build(),
+                          new Hit.Builder<Map<String, Object>>().id("2").index("stuff").sort(["9", "4"]).build()]
+        SearchResponse searchResponse = createSearchResponse(hits, 0, 2, null, "somePit")
+
+        when:
+        Pagination pagination = ResponseUtils.getPagination(searchCriteria, searchResponse)
+        var cursor = CursorUtils.decode(pagination.getCursor())
+
+        then:
+        pagination.getSearchAfter()
+        cursor.getPitId() == "somePit"
+        cursor.getSearchAfterList() == ["9", "4"]
+    }
+
+    def "GetBuilderFromHit docvalue fields"() {
+        given:
+        Hit hit = new Hit.Builder<Map<String, Object>>().id("1").index("stuff")
+                .fields([size: JsonData.of([25]), cursor: JsonData.of(["abc", "def"]), unknown: JsonData.of([1])])
+                .build()
+
+        when:
+        var pagination = ResponseUtils.getBuilderFromHit(hit, Pagination.newBuilder()).build()
+
+        then:
+        pagination.getSize() == 25
+        pagination.getCursor() == "abc"
+        pagination.getFrom() == 0
+    }
+
+    def "GetBuilderFromHit typed docvalue fields"() {
+        given:
+        Hit hit = new Hit.Builder<Map<String, Object>>().id("1").index("stuff")
+                .fields([double_value: JsonData.of([1.5]), int64_value: JsonData.of([12]), uint32_value: JsonData.of(["7"]),
+                         bool_value: JsonData.of([true]), enum_value: JsonData.of(["TWO"]), string_value: JsonData.of([42]),
+                         "nested_value.nested_string_value": JsonData.of(["nested"])])
+                .build()
+
+        when:
+        var mappingTest = ResponseUtils.getBuilderFromHit(hit, MappingTest.newBuilder()).build()
+
+        then:
+        mappingTest.getDoubleValue() == 1.5d
+        mappingTest.getInt64Value() == 12L
+        mappingTest.getUint32Value() == 7
+        mappingTest.getBoolValue()
+        mappingTest.getEnumValue() == MappingTest.Enum.TWO
+        mappingTest.getStringValue() == "42"
+        mappingTest.getNestedValue().getNestedStringValue() == "nested"
+    }
+
+    @Unroll
+    def "GetBuilderFromHit docvalue timestamp #observedAt"() {
+        given:
+        Hit hit = new Hit.Builder<Map<String, Object>>().id("1").index("stuff")
+                .fields([observed_at: JsonData.of([observedAt])])
+                .build()
+
+        when:
+        var geoMappingTest = ResponseUtils.getBuilderFromHit(hit, GeoMappingTest.newBuilder()).build()
+
+        then:
+        geoMappingTest.getObservedAt() == Timestamps.fromSeconds(1614834367)
+
+        where:
+        observedAt << ["2021-03-04T05:06:07.000Z", 1614834367, "1614834367"]
+    }
+
     @Unroll
     def "GetBuilderFromHit #docId"() {
         given:
@@ -93,6 +198,29 @@ class ResponseUtilsSpec extends Specification {
         "3"     | 90   | 30   | 1000  | "cursor3"
     }
 
+    @Unroll
+    def "DecodeHits preserves hit order with #count hits"() {
+        given:
+        List<Hit> hits = (0..<count).collect { i ->
+            createSearchHit(String.valueOf(i), [from: i, size: 10, total: count, cursor: "cursor" + i])
+        }
+
+        when:
+        var decoded = ResponseUtils.decodeHits(hits, { Pagination.newBuilder() }, new ForkJoinPool(4), 8)
+
+        then:
+        decoded.getBuilders()*.getFrom() == (0..<count).toList()
+        decoded.getBuilders()*.getCursor() == (0..<count).collect { "cursor" + it }
+        decoded.isParallel() == parallel
+        !decoded.getDecodeTime().isNegative()
+
+        where:
+        count | parallel
+        0     | false
+        7     | false
+        500   | true
+    }
+
     SearchCriteria createSearchCriteria(int from) {
         return SearchCriteria.newBuilder()
                         .setPagination(Pagination.newBuilder()